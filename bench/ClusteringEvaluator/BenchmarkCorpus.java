@@ -0,0 +1,121 @@
+package ClusteringEvaluator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+
+/**
+ * Corpora of the benchmarks : the first tweets of the database, read once per benchmark JVM
+ * The corpus size is the number of tweets kept, the vocabulary size the number of most frequent terms kept
+ * in the vectors (0 to keep every term), so that each hot path can be measured on several corpus shapes.
+ */
+public class BenchmarkCorpus
+{
+    /** Tweets of the database, in storage order */
+    private static List<HashMap<String, String>> tweets;
+
+
+    /**
+     * @param corpusSize The number of tweets, 0 for every tweet of the database
+     * @return The first tweets of the database, as "id" and "text" tuples (See FrequencyMatrixBuilder.getTermsFrequencyMatrix)
+     * @throws Exception If the database cannot be read
+     */
+    public static synchronized List<HashMap<String, String>> getTweets(int corpusSize) throws Exception
+    {
+        if(tweets == null)
+        {
+            tweets = new ArrayList<HashMap<String, String>>();
+            TweetReader reader = new TweetReader(FrequencyMatrixBuilder.TWEETS_DATABASE, false, false);
+            try
+            {
+                while(reader.hasNext())
+                {
+                    Tweet tweet = reader.next();
+                    HashMap<String, String> tuple = new HashMap<String, String>();
+                    tuple.put(FrequencyMatrixBuilder.ID, Long.toString(tweet.getId()));
+                    tuple.put(FrequencyMatrixBuilder.TEXT, tweet.getText());
+                    tweets.add(tuple);
+                }
+            }
+            finally
+            {
+                reader.close();
+            }
+        }
+        if(corpusSize <= 0 || corpusSize >= tweets.size())
+        {
+            return tweets;
+        }
+        return tweets.subList(0, corpusSize);
+    }
+
+    /**
+     * Builds the frequency matrix of the first tweets of the database, restricted to the most frequent terms
+     * @param corpusSize The number of tweets, 0 for every tweet of the database
+     * @param vocabularySize The number of most frequent terms kept, 0 for every term
+     * @param freqMatrix The frequency matrix to fill
+     * @param dictionary The dictionary to fill
+     * @throws Exception If the database cannot be read
+     */
+    public static void getFrequencyMatrix(int corpusSize, int vocabularySize, LongHashMap<SparseVector> freqMatrix, TermDictionary dictionary) throws Exception
+    {
+        LongHashMap<SparseVector> fullMatrix = new LongHashMap<SparseVector>();
+        FrequencyMatrixBuilder.getTermsFrequencyMatrix(fullMatrix, dictionary, getTweets(corpusSize));
+
+        boolean[] kept = getMostFrequentTerms(fullMatrix, dictionary.size(), vocabularySize);
+        for(int position = 0; position < fullMatrix.size(); ++position)
+        {
+            SparseVector vector = fullMatrix.getValue(position);
+            int[] termIds = new int[vector.size()];
+            float[] weights = new float[vector.size()];
+            int size = 0;
+            for(int i = 0; i < vector.size(); ++i)
+            {
+                if(kept[vector.getTermIds()[i]])
+                {
+                    termIds[size] = vector.getTermIds()[i];
+                    weights[size++] = vector.getWeights()[i];
+                }
+            }
+            freqMatrix.put(fullMatrix.getKey(position), new SparseVector(Arrays.copyOf(termIds, size), Arrays.copyOf(weights, size)));
+        }
+    }
+
+    /**
+     * @param freqMatrix A frequency matrix
+     * @param termsNumber The number of terms of the dictionary
+     * @param vocabularySize The number of terms to keep, 0 for every term
+     * @return True for each term ID among the vocabularySize terms of highest document frequency
+     */
+    private static boolean[] getMostFrequentTerms(LongHashMap<SparseVector> freqMatrix, int termsNumber, int vocabularySize)
+    {
+        boolean[] kept = new boolean[termsNumber];
+        if(vocabularySize <= 0 || vocabularySize >= termsNumber)
+        {
+            Arrays.fill(kept, true);
+            return kept;
+        }
+
+        //Document frequency in the high bits, term ID in the low bits
+        long[] frequencies = new long[termsNumber];
+        for(int termId = 0; termId < termsNumber; ++termId)
+        {
+            frequencies[termId] = termId;
+        }
+        for(int position = 0; position < freqMatrix.size(); ++position)
+        {
+            for(int termId : freqMatrix.getValue(position).getTermIds())
+            {
+                frequencies[termId] += 1L << 32;
+            }
+        }
+        Arrays.sort(frequencies);
+        for(int i = termsNumber - vocabularySize; i < termsNumber; ++i)
+        {
+            kept[(int) frequencies[i]] = true;
+        }
+        return kept;
+    }
+}
@@ -0,0 +1,75 @@
+package ClusteringEvaluator;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Cost of the evaluation of an FSD clustering of the first tweets of the database against the real clustering :
+ * contingency table, linking of the clusters, F-score and external metrics (See ClusteringEvaluator)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvaluationBenchmark
+{
+    @Param({"500", "1000", "2000"})
+    public int corpusSize;
+
+    @Param({"500", "0"})
+    public int vocabularySize;
+
+    private HashMap<Integer, long[]> realClustering;
+    private HashMap<Integer, long[]> fsdClustering;
+    private ContingencyTable table;
+
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        TermDictionary dictionary = new TermDictionary();
+        LongHashMap<SparseVector> freqMatrix = new LongHashMap<SparseVector>();
+        BenchmarkCorpus.getFrequencyMatrix(corpusSize, vocabularySize, freqMatrix, dictionary);
+        realClustering = ClusteringEvaluator.importClustering(ClusteringEvaluator.REAL_CLUSTERING_FILE_PATH);
+        fsdClustering = FSDBuilder.getFSDClustering(dictionary, freqMatrix, false);
+        table = new ContingencyTable(realClustering, fsdClustering);
+    }
+
+    @Benchmark
+    public ContingencyTable contingencyTable()
+    {
+        return new ContingencyTable(realClustering, fsdClustering);
+    }
+
+    @Benchmark
+    public double bestOverlapFScore()
+    {
+        return ClusteringEvaluator.getClusteringAccuracy(table, ClusteringEvaluator.linkRealClustersWithCorrectTweets(table));
+    }
+
+    @Benchmark
+    public double oneToOneFScore()
+    {
+        return ClusteringEvaluator.getClusteringAccuracy(table, ClusteringEvaluator.linkRealClustersOneToOne(table));
+    }
+
+    @Benchmark
+    public ClusteringReport report()
+    {
+        return new ClusteringReport(table, 0);
+    }
+}
@@ -0,0 +1,62 @@
+package ClusteringEvaluator;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Cost of a whole FSD clustering of the first tweets of the database (FSDBuilder.getFSDClustering),
+ * with the exact and the approximate seeds search, on the raw and the TF-IDF weighted terms frequencies
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FSDClusteringBenchmark
+{
+    @Param({"500", "1000", "2000"})
+    public int corpusSize;
+
+    @Param({"500", "0"})
+    public int vocabularySize;
+
+    @Param({"false", "true"})
+    public boolean approximate;
+
+    @Param({"RAW", "TF_IDF"})
+    public TermWeighting weighting;
+
+    /** Cosine similarity threshold of the clustering, the default one of FSDBuilder */
+    private static final double FSD_THRESHOLD = 0.1;
+
+    private TermDictionary dictionary;
+    private LongHashMap<SparseVector> freqMatrix;
+
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        dictionary = new TermDictionary();
+        freqMatrix = new LongHashMap<SparseVector>();
+        BenchmarkCorpus.getFrequencyMatrix(corpusSize, vocabularySize, freqMatrix, dictionary);
+    }
+
+    @Benchmark
+    public HashMap<Integer, long[]> fsdClustering() throws Exception
+    {
+        return FSDBuilder.getFSDClustering(dictionary, freqMatrix, approximate, FSD_THRESHOLD, weighting);
+    }
+}
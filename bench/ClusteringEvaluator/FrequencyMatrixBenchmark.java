@@ -0,0 +1,53 @@
+package ClusteringEvaluator;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Cost of the frequency matrix of the first tweets of the database (FrequencyMatrixBuilder.getTermsFrequencyMatrix),
+ * running the analyzer directly or through a Lucene index, the tweets being already read
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrequencyMatrixBenchmark
+{
+    @Param({"500", "1000", "2000"})
+    public int corpusSize;
+
+    @Param({"false", "true"})
+    public boolean useIndex;
+
+    private List<HashMap<String, String>> tweets;
+
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        tweets = BenchmarkCorpus.getTweets(corpusSize);
+    }
+
+    @Benchmark
+    public LongHashMap<SparseVector> frequencyMatrix() throws Exception
+    {
+        LongHashMap<SparseVector> freqMatrix = new LongHashMap<SparseVector>();
+        FrequencyMatrixBuilder.getTermsFrequencyMatrix(freqMatrix, new TermDictionary(), tweets, useIndex);
+        return freqMatrix;
+    }
+}
@@ -0,0 +1,79 @@
+package ClusteringEvaluator;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Cost of a single tweet in the FSD inner loop : the cosine similarity of two tweets (FSDBuilder.getCosineSimilarity)
+ * and the tokenization and vectorization of a text (StreamingFSD.getSparseVector)
+ * Each call takes the next tweet of the corpus, so that the measure is averaged over the corpus.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SimilarityBenchmark
+{
+    @Param({"500", "2000"})
+    public int corpusSize;
+
+    @Param({"500", "0"})
+    public int vocabularySize;
+
+    private SparseVector[] vectors;
+    private String[] texts;
+    private StreamingFSD streamingFSD;
+    private int next;
+
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        LongHashMap<SparseVector> freqMatrix = new LongHashMap<SparseVector>();
+        BenchmarkCorpus.getFrequencyMatrix(corpusSize, vocabularySize, freqMatrix, new TermDictionary());
+        vectors = new SparseVector[freqMatrix.size()];
+        for(int position = 0; position < vectors.length; ++position)
+        {
+            vectors[position] = freqMatrix.getValue(position);
+        }
+
+        List<HashMap<String, String>> tweets = BenchmarkCorpus.getTweets(corpusSize);
+        texts = new String[tweets.size()];
+        for(int i = 0; i < texts.length; ++i)
+        {
+            texts[i] = tweets.get(i).get(FrequencyMatrixBuilder.TEXT);
+        }
+        streamingFSD = FSDBuilder.createStreamingFSD(false);
+    }
+
+    @Benchmark
+    public double cosineSimilarity()
+    {
+        int i = next;
+        next = (next + 1) % vectors.length;
+        return FSDBuilder.getCosineSimilarity(vectors[i], vectors[(i + vectors.length / 2) % vectors.length]);
+    }
+
+    @Benchmark
+    public SparseVector sparseVector() throws Exception
+    {
+        int i = next;
+        next = (next + 1) % texts.length;
+        return streamingFSD.getSparseVector(texts[i]);
+    }
+}
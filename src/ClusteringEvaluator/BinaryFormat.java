@@ -0,0 +1,357 @@
+package ClusteringEvaluator;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+
+
+/**
+ * Compact binary files of the clusterings and of the frequency matrices, read through a memory mapping,
+ * so that a file already loaded by a previous run is read from the page cache without any parsing of text
+ *
+ * Every file starts with a magic number, a version, the numbers of rows and the offset of each column,
+ * the columns being stored one after the other. The integers are little endian, the IDs are varints
+ * (7 bits per byte), delta encoded from the previous ID and zigzag encoded when the delta may be negative.
+ *
+ * Clustering : cluster IDs (ascending, signed deltas) | cluster sizes | tweet IDs of each cluster (signed deltas)
+ * Frequency matrix : terms of the dictionary (UTF-8 length and bytes) | tweet IDs (matrix order, signed deltas)
+ *                    | number of terms of each tweet | term IDs of each tweet (ascending deltas) | weights (floats)
+ * A file is limited to 2 GB, the size of a single mapping.
+ */
+public class BinaryFormat
+{
+    /** Extension of the binary files */
+    public static final String EXTENSION = ".bin";
+
+    /** Magic numbers : "CLST" and "FMAT" */
+    private static final int CLUSTERING_MAGIC = 0x54534C43;
+    private static final int FREQUENCY_MATRIX_MAGIC = 0x54414D46;
+    /** Version of the layouts */
+    private static final int VERSION = 1;
+
+
+    /**
+     * Returns true if a binary file exists and is not older than the file it was built from
+     * @param binaryFilePath The binary file path
+     * @param sourceFilePath The source file path
+     * @return True if the binary file can be read instead of the source file
+     */
+    public static boolean isUpToDate(String binaryFilePath, String sourceFilePath)
+    {
+        File binaryFile = new File(binaryFilePath);
+        File sourceFile = new File(sourceFilePath);
+        return binaryFile.isFile() && sourceFile.isFile() && binaryFile.lastModified() >= sourceFile.lastModified();
+    }
+
+    /**
+     * Writes a clustering, the clusters being sorted by ID
+     * @param filePath The file path
+     * @param clustering A clustering map :
+     *                          Key = clusterId
+     *                          Value = tweets ID array, in ascending order (any order being kept, but less compact)
+     * @throws IOException
+     */
+    public static void writeClustering(String filePath, HashMap<Integer, long[]> clustering) throws IOException
+    {
+        int[] clusterIds = new int[clustering.size()];
+        int i = 0;
+        for(Integer clusterId : clustering.keySet())
+        {
+            clusterIds[i++] = clusterId;
+        }
+        Arrays.sort(clusterIds);
+
+        ChannelWriter writer = new ChannelWriter(filePath);
+        try
+        {
+            writer.writeInt(CLUSTERING_MAGIC);
+            writer.writeInt(VERSION);
+            writer.writeInt(clusterIds.length);
+            long offsetsPosition = writer.getPosition();
+            writer.writeLong(0);
+            writer.writeLong(0);
+
+            long previous = 0;
+            for(int clusterId : clusterIds)
+            {
+                writer.writeSignedVarLong(clusterId - previous);
+                previous = clusterId;
+            }
+
+            writer.writeLongAt(offsetsPosition, writer.getPosition());
+            for(int clusterId : clusterIds)
+            {
+                writer.writeVarLong(clustering.get(clusterId).length);
+            }
+
+            writer.writeLongAt(offsetsPosition + 8, writer.getPosition());
+            for(int clusterId : clusterIds)
+            {
+                previous = 0;
+                for(long tweetId : clustering.get(clusterId))
+                {
+                    writer.writeSignedVarLong(tweetId - previous);
+                    previous = tweetId;
+                }
+            }
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+    /**
+     * Reads a clustering written by writeClustering
+     * @param filePath The file path
+     * @return A clustering map :
+     *                  Key = clusterId
+     *                  Value = tweets ID array, in the written order
+     * @throws IOException If the file is not a clustering file
+     */
+    public static HashMap<Integer, long[]> readClustering(String filePath) throws IOException
+    {
+        ByteBuffer buffer = map(filePath);
+        checkHeader(buffer, CLUSTERING_MAGIC, filePath);
+        int clustersNumber = buffer.getInt();
+        ByteBuffer sizes = getColumn(buffer, buffer.getLong());
+        ByteBuffer members = getColumn(buffer, buffer.getLong());
+
+        HashMap<Integer, long[]> clustering = new HashMap<Integer, long[]>();
+        long clusterId = 0;
+        for(int i = 0; i < clustersNumber; ++i)
+        {
+            clusterId += readSignedVarLong(buffer);
+            long[] tweetIds = new long[(int) readVarLong(sizes)];
+            long tweetId = 0;
+            for(int j = 0; j < tweetIds.length; ++j)
+            {
+                tweetId += readSignedVarLong(members);
+                tweetIds[j] = tweetId;
+            }
+            clustering.put((int) clusterId, tweetIds);
+        }
+        return clustering;
+    }
+
+    /**
+     * Writes a frequency matrix and the dictionary of its term IDs
+     * @param filePath The file path
+     * @param freqMatrix For each tweet, a sparse terms vector, written in the matrix order
+     * @param dictionary The dictionary of every term of the vectors
+     * @throws IOException
+     */
+    public static void writeFrequencyMatrix(String filePath, LongHashMap<SparseVector> freqMatrix, TermDictionary dictionary) throws IOException
+    {
+        int tweetsNumber = freqMatrix.size();
+        ChannelWriter writer = new ChannelWriter(filePath);
+        try
+        {
+            writer.writeInt(FREQUENCY_MATRIX_MAGIC);
+            writer.writeInt(VERSION);
+            writer.writeInt(tweetsNumber);
+            writer.writeInt(dictionary.size());
+            long offsetsPosition = writer.getPosition();
+            for(int i = 0; i < 4; ++i)
+            {
+                writer.writeLong(0);
+            }
+
+            for(int termId = 0; termId < dictionary.size(); ++termId)
+            {
+                byte[] term = dictionary.getTerm(termId).getBytes(ChannelWriter.UTF8);
+                writer.writeVarLong(term.length);
+                writer.writeBytes(term);
+            }
+
+            writer.writeLongAt(offsetsPosition, writer.getPosition());
+            long previous = 0;
+            for(int position = 0; position < tweetsNumber; ++position)
+            {
+                writer.writeSignedVarLong(freqMatrix.getKey(position) - previous);
+                previous = freqMatrix.getKey(position);
+            }
+
+            writer.writeLongAt(offsetsPosition + 8, writer.getPosition());
+            for(int position = 0; position < tweetsNumber; ++position)
+            {
+                writer.writeVarLong(freqMatrix.getValue(position).size());
+            }
+
+            writer.writeLongAt(offsetsPosition + 16, writer.getPosition());
+            for(int position = 0; position < tweetsNumber; ++position)
+            {
+                int previousTermId = 0;
+                for(int termId : freqMatrix.getValue(position).getTermIds())
+                {
+                    writer.writeVarLong(termId - previousTermId);
+                    previousTermId = termId;
+                }
+            }
+
+            //Aligning the weights on 4 bytes
+            while(writer.getPosition() % 4 != 0)
+            {
+                writer.writeByte(0);
+            }
+            writer.writeLongAt(offsetsPosition + 24, writer.getPosition());
+            for(int position = 0; position < tweetsNumber; ++position)
+            {
+                for(float weight : freqMatrix.getValue(position).getWeights())
+                {
+                    writer.writeFloat(weight);
+                }
+            }
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+    /**
+     * Reads a frequency matrix written by writeFrequencyMatrix
+     * The terms are added to the dictionary : if it is empty, the term IDs are the written ones,
+     * otherwise the vectors are translated to the IDs of the dictionary
+     * @param filePath The file path
+     * @param freqMatrix The frequency matrix to fill, in the written order
+     * @param dictionary The dictionary to fill with the terms of the file
+     * @throws IOException If the file is not a frequency matrix file
+     */
+    public static void readFrequencyMatrix(String filePath, LongHashMap<SparseVector> freqMatrix, TermDictionary dictionary) throws IOException
+    {
+        ByteBuffer buffer = map(filePath);
+        checkHeader(buffer, FREQUENCY_MATRIX_MAGIC, filePath);
+        int tweetsNumber = buffer.getInt();
+        int termsNumber = buffer.getInt();
+        ByteBuffer tweetIds = getColumn(buffer, buffer.getLong());
+        ByteBuffer sizes = getColumn(buffer, buffer.getLong());
+        ByteBuffer termIds = getColumn(buffer, buffer.getLong());
+        FloatBuffer weights = getColumn(buffer, buffer.getLong()).asFloatBuffer();
+
+        //Terms, translated to the IDs of the dictionary
+        int[] translation = new int[termsNumber];
+        boolean identity = true;
+        byte[] term = new byte[64];
+        for(int termId = 0; termId < termsNumber; ++termId)
+        {
+            int length = (int) readVarLong(buffer);
+            if(length > term.length)
+            {
+                term = new byte[Math.max(length, term.length * 2)];
+            }
+            buffer.get(term, 0, length);
+            translation[termId] = dictionary.add(new String(term, 0, length, ChannelWriter.UTF8));
+            identity &= translation[termId] == termId;
+        }
+
+        long tweetId = 0;
+        for(int position = 0; position < tweetsNumber; ++position)
+        {
+            tweetId += readSignedVarLong(tweetIds);
+            int size = (int) readVarLong(sizes);
+            int[] vectorTermIds = new int[size];
+            float[] vectorWeights = new float[size];
+            int termId = 0;
+            for(int i = 0; i < size; ++i)
+            {
+                termId += (int) readVarLong(termIds);
+                vectorTermIds[i] = translation[termId];
+            }
+            weights.get(vectorWeights);
+            freqMatrix.put(tweetId, identity ? new SparseVector(vectorTermIds, vectorWeights) : SparseVector.fromUnsorted(vectorTermIds, vectorWeights, size));
+        }
+    }
+
+    /**
+     * Maps a whole file in memory, read only
+     * @param filePath The file path
+     * @return The little endian buffer of the file
+     * @throws IOException
+     */
+    private static ByteBuffer map(String filePath) throws IOException
+    {
+        FileInputStream stream = new FileInputStream(filePath);
+        try
+        {
+            FileChannel channel = stream.getChannel();
+            if(channel.size() > Integer.MAX_VALUE)
+            {
+                throw new IOException("File too large to be mapped : " + filePath);
+            }
+            //The mapping stays valid once the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            return buffer;
+        }
+        finally
+        {
+            stream.close();
+        }
+    }
+
+    /**
+     * Reads and checks the magic number and the version of a file
+     * @param buffer The buffer of the file, at its beginning
+     * @param magic The expected magic number
+     * @param filePath The file path, for the error message
+     * @throws IOException If the magic number or the version is not the expected one
+     */
+    private static void checkHeader(ByteBuffer buffer, int magic, String filePath) throws IOException
+    {
+        if(buffer.remaining() < 8 || buffer.getInt() != magic || buffer.getInt() != VERSION)
+        {
+            throw new IOException("Invalid or unsupported binary file : " + filePath);
+        }
+    }
+
+    /**
+     * @param buffer The buffer of a file
+     * @param offset The offset of a column
+     * @return An independent little endian buffer starting at the column
+     */
+    private static ByteBuffer getColumn(ByteBuffer buffer, long offset)
+    {
+        ByteBuffer column = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        column.position((int) offset);
+        return column.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Reads an unsigned variable-length integer (See ChannelWriter.writeVarLong)
+     * @param buffer The buffer, positioned on the integer
+     * @return The value
+     */
+    private static long readVarLong(ByteBuffer buffer)
+    {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do
+        {
+            b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        }
+        while(b < 0);
+        return value;
+    }
+
+    /**
+     * Reads a zigzag encoded variable-length integer (See ChannelWriter.writeSignedVarLong)
+     * @param buffer The buffer, positioned on the integer
+     * @return The value
+     */
+    private static long readSignedVarLong(ByteBuffer buffer)
+    {
+        long value = readVarLong(buffer);
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
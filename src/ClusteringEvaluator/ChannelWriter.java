@@ -0,0 +1,188 @@
+package ClusteringEvaluator;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+
+/**
+ * Buffered writer of a file through its NIO channel : the values are encoded in a direct buffer,
+ * which is written to the channel each time it is full, so that a file is written by large blocks
+ * whatever the size of the values. The integers are little endian (See BinaryFormat).
+ * An instance is not thread safe.
+ */
+public class ChannelWriter
+{
+    /** Size of the buffer, in bytes */
+    private static final int BUFFER_SIZE = 1 << 16;
+    /** Charset of the strings */
+    public static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /** Output stream of the file */
+    private final FileOutputStream stream;
+    /** Channel of the file */
+    private final FileChannel channel;
+    /** Values waiting to be written */
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+
+    /**
+     * Creates or truncates a file
+     * @param filePath The file path
+     * @throws IOException
+     */
+    public ChannelWriter(String filePath) throws IOException
+    {
+        stream = new FileOutputStream(filePath);
+        channel = stream.getChannel();
+    }
+
+    public void writeByte(int value) throws IOException
+    {
+        reserve(1);
+        buffer.put((byte) value);
+    }
+
+    public void writeInt(int value) throws IOException
+    {
+        reserve(4);
+        buffer.putInt(value);
+    }
+
+    public void writeLong(long value) throws IOException
+    {
+        reserve(8);
+        buffer.putLong(value);
+    }
+
+    public void writeFloat(float value) throws IOException
+    {
+        reserve(4);
+        buffer.putFloat(value);
+    }
+
+    /**
+     * Writes an unsigned variable-length integer : 7 bits per byte, the high bit being set on every byte but the last
+     * @param value The value, read as unsigned
+     * @throws IOException
+     */
+    public void writeVarLong(long value) throws IOException
+    {
+        reserve(10);
+        while((value & ~0x7FL) != 0)
+        {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Writes a signed variable-length integer, zigzag encoded so that the small negative values are short too
+     * @param value The value
+     * @throws IOException
+     */
+    public void writeSignedVarLong(long value) throws IOException
+    {
+        writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    /**
+     * Writes bytes as they are
+     * @param bytes The bytes
+     * @throws IOException
+     */
+    public void writeBytes(byte[] bytes) throws IOException
+    {
+        int offset = 0;
+        while(offset < bytes.length)
+        {
+            reserve(1);
+            int length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    /**
+     * Writes a string as its UTF-8 bytes, without any length
+     * @param value The string
+     * @throws IOException
+     */
+    public void writeString(String value) throws IOException
+    {
+        writeBytes(value.getBytes(UTF8));
+    }
+
+    /**
+     * @return The position of the next value in the file
+     * @throws IOException
+     */
+    public long getPosition() throws IOException
+    {
+        return channel.position() + buffer.position();
+    }
+
+    /**
+     * Overwrites a long already written, e.g. an offset of a header known once the data is written
+     * @param position The position of the long in the file
+     * @param value The value
+     * @throws IOException
+     */
+    public void writeLongAt(long position, long value) throws IOException
+    {
+        flush();
+        ByteBuffer bytes = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        bytes.putLong(value).flip();
+        while(bytes.hasRemaining())
+        {
+            channel.write(bytes, position + bytes.position());
+        }
+    }
+
+    /**
+     * Writes the buffered values to the file
+     * @throws IOException
+     */
+    public void flush() throws IOException
+    {
+        buffer.flip();
+        while(buffer.hasRemaining())
+        {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Writes the buffered values and closes the file
+     * @throws IOException
+     */
+    public void close() throws IOException
+    {
+        try
+        {
+            flush();
+        }
+        finally
+        {
+            stream.close();
+        }
+    }
+
+    /**
+     * Flushes the buffer if it cannot hold a number of bytes
+     * @param length The number of bytes
+     * @throws IOException
+     */
+    private void reserve(int length) throws IOException
+    {
+        if(buffer.remaining() < length)
+        {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package ClusteringEvaluator;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+
+/**
+ * Matching of the new clusters with the real clusters, read from the overlaps of a contingency table
+ * Best overlap : each new cluster is linked with the real cluster sharing the most tweets with it,
+ * several new clusters being possibly linked with the same real cluster.
+ * Optimal : each real cluster is linked with at most one new cluster, so that the total number of shared tweets
+ * is maximal (Hungarian algorithm). Only the new clusters sharing a tweet with a real cluster are candidates,
+ * so that the cost is O(real^2 * candidates) whatever the number of new clusters without any overlap.
+ * A new cluster sharing no tweet with its possible real clusters is not linked.
+ */
+public class ClusterMatcher
+{
+    /**
+     * Links each new cluster with the real cluster sharing the most tweets with it
+     * In case of tie, the first real cluster (in real clustering order) is kept
+     * @param table The contingency table of the real clustering and the new clustering
+     * @return For each linked new cluster ID, the real cluster ID
+     */
+    public static HashMap<Integer, Integer> getBestOverlapMatching(ContingencyTable table)
+    {
+        HashMap<Integer, Integer> matching = new HashMap<Integer, Integer>();
+
+        for(int row = 0; row < table.getRowsNumber(); ++row)
+        {
+            int[] columns = table.getCellColumns(row);
+            int[] counts = table.getCellCounts(row);
+            int best = -1;
+            for(int i = 0; i < counts.length; ++i)
+            {
+                if(best == -1 || counts[i] > counts[best])
+                {
+                    best = i;
+                }
+            }
+            if(best != -1)
+            {
+                matching.put(table.getNewClusterId(row), table.getRealClusterId(columns[best]));
+            }
+        }
+        return matching;
+    }
+
+    /**
+     * Links the new clusters with the real clusters one-to-one, maximizing the total number of shared tweets
+     * @param table The contingency table of the real clustering and the new clustering
+     * @return For each linked new cluster ID, the real cluster ID
+     */
+    public static HashMap<Integer, Integer> getOptimalMatching(ContingencyTable table)
+    {
+        HashMap<Integer, Integer> matching = new HashMap<Integer, Integer>();
+        int realNumber = table.getColumnsNumber();
+
+        //Candidates : the rows with at least one overlap
+        int[] candidates = new int[table.getRowsNumber()];
+        int candidatesNumber = 0;
+        for(int row = 0; row < table.getRowsNumber(); ++row)
+        {
+            if(table.getCellColumns(row).length > 0)
+            {
+                candidates[candidatesNumber++] = row;
+            }
+        }
+        if(realNumber == 0 || candidatesNumber == 0)
+        {
+            return matching;
+        }
+
+        //Dense overlaps of each real cluster with each candidate, padded with empty candidates
+        //so that every real cluster can be assigned
+        int width = Math.max(candidatesNumber, realNumber);
+        int[][] overlaps = new int[realNumber][width];
+        for(int j = 0; j < candidatesNumber; ++j)
+        {
+            int[] columns = table.getCellColumns(candidates[j]);
+            int[] counts = table.getCellCounts(candidates[j]);
+            for(int i = 0; i < columns.length; ++i)
+            {
+                overlaps[columns[i]][j] = counts[i];
+            }
+        }
+
+        int[] assignment = getMaximumAssignment(overlaps, width);
+        for(int column = 0; column < realNumber; ++column)
+        {
+            int j = assignment[column];
+            if(j < candidatesNumber && overlaps[column][j] > 0)
+            {
+                matching.put(table.getNewClusterId(candidates[j]), table.getRealClusterId(column));
+            }
+        }
+        return matching;
+    }
+
+    /**
+     * Hungarian algorithm (shortest augmenting paths with potentials) on a rectangular matrix,
+     * each line being assigned to a distinct column so that the sum of the assigned weights is maximal
+     * @param weights The weights, lines number &lt;= width
+     * @param width The number of columns
+     * @return The column assigned to each line
+     */
+    private static int[] getMaximumAssignment(int[][] weights, int width)
+    {
+        int n = weights.length;
+        //Potentials of the lines (u) and of the columns (v), line of each column (p, 0 if free), indexes from 1
+        long[] u = new long[n + 1];
+        long[] v = new long[width + 1];
+        int[] p = new int[width + 1];
+        int[] way = new int[width + 1];
+        long[] minv = new long[width + 1];
+        boolean[] used = new boolean[width + 1];
+
+        for(int line = 1; line <= n; ++line)
+        {
+            p[0] = line;
+            int column0 = 0;
+            Arrays.fill(minv, Long.MAX_VALUE);
+            Arrays.fill(used, false);
+
+            //Growing the alternating tree from the line until a free column is reached
+            do
+            {
+                used[column0] = true;
+                int line0 = p[column0], column1 = 0;
+                long delta = Long.MAX_VALUE;
+                int[] lineWeights = weights[line0 - 1];
+                for(int column = 1; column <= width; ++column)
+                {
+                    if(!used[column])
+                    {
+                        //Minimizing the opposite of the weights
+                        long reduced = -lineWeights[column - 1] - u[line0] - v[column];
+                        if(reduced < minv[column])
+                        {
+                            minv[column] = reduced;
+                            way[column] = column0;
+                        }
+                        if(minv[column] < delta)
+                        {
+                            delta = minv[column];
+                            column1 = column;
+                        }
+                    }
+                }
+                for(int column = 0; column <= width; ++column)
+                {
+                    if(used[column])
+                    {
+                        u[p[column]] += delta;
+                        v[column] -= delta;
+                    }
+                    else
+                    {
+                        minv[column] -= delta;
+                    }
+                }
+                column0 = column1;
+            }
+            while(p[column0] != 0);
+
+            //Flipping the augmenting path
+            do
+            {
+                int column1 = way[column0];
+                p[column0] = p[column1];
+                column0 = column1;
+            }
+            while(column0 != 0);
+        }
+
+        int[] assignment = new int[n];
+        for(int column = 1; column <= width; ++column)
+        {
+            if(p[column] != 0)
+            {
+                assignment[p[column] - 1] = column - 1;
+            }
+        }
+        return assignment;
+    }
+}
@@ -0,0 +1,19 @@
+package ClusteringEvaluator;
+
+import java.io.IOException;
+
+
+/**
+ * Output of the clusters finished by a streaming first story detection
+ */
+public interface ClusterSink
+{
+    /**
+     * Receives a finished cluster : its seed left the time window, so that no tweet will join it anymore
+     * @param clusterId The cluster ID
+     * @param seedTweetId The tweet ID of the cluster seed
+     * @param tweetIds Every tweet ID of the cluster, seed included, in arrival order (the array is not kept)
+     * @throws IOException
+     */
+    void clusterClosed(int clusterId, long seedTweetId, long[] tweetIds) throws IOException;
+}
@@ -9,10 +9,17 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Main class dedicated to run and evaluate event detection clusterings
@@ -25,30 +32,92 @@ public class ClusteringEvaluator
     private static final String CLUSTERS_THEMES_FILE_PATH = "resources\\clustersThemes";
     
     /** Clusterings to import */
-    private static final String REAL_CLUSTERING_FILE_PATH = "resources\\tweetsClustered";
+    static final String REAL_CLUSTERING_FILE_PATH = "resources\\tweetsClustered";
     private static final String KMEANS_CLUSTERING_FILE_PATH = "results\\kmeansClustering";
     
+    /** Argument running the FSD threshold sweep instead of the whole evaluation */
+    private static final String SWEEP_MODE = "sweep";
+    /** Mode comparing the approximate FSD (See LSHSeedIndex) with the exact one */
+    private static final String APPROXIMATE_MODE = "approximate";
+    /** Mode comparing the frequency matrix built with and without the Lucene index (time and heap) */
+    private static final String MATRIX_COMPARISON_MODE = "matrixModes";
+    /** Mode running the pipelined streaming FSD on the tweets of the database (See FSDPipeline) */
+    private static final String PIPELINE_MODE = "pipeline";
+    /** Mode running the streaming FSD on the tweets of the database, with a sliding window (See StreamingFSD) */
+    private static final String STREAMING_MODE = "streaming";
+    /** Cosine similarity thresholds of the FSD sweep, each one run with every terms weighting, with the exact and the approximate seeds search */
+    private static final double[] SWEEP_THRESHOLDS = {0.05, 0.1, 0.15, 0.2, 0.25, 0.3, 0.4, 0.5};
+    
+    /** Metrics log file path : a JSON snapshot of the metrics per line (See Metrics) */
+    private static final String METRICS_LOG_FILE_PATH = "results\\metrics.log";
+    /** Directory of the binary copies of the imported clusterings (See importClustering) */
+    private static final String CACHE_DIRECTORY = "results\\";
+    /** Period of the metrics log, in milliseconds */
+    private static final long METRICS_LOG_PERIOD = 10000;
+    
     /**
      * Algorithm :
      *      Calculating a terms frequency matrix regarding to each tweets content
      *      Calculating a FSD in order to cluster each tweet
-     *      Exporting results
-     * @param args Unused
+     *      Saving the FSD clustering and its evaluation in the results database
+     * The metrics of each stage are exported through JMX and logged in METRICS_LOG_FILE_PATH during the run
+     * If the first argument is "sweep", the FSD is only run for every threshold of SWEEP_THRESHOLDS
+     * once the frequency matrix is built, and a table of the results is displayed
+     * If the first argument is "approximate", the approximate FSD is only compared with the exact one
+     * once the frequency matrix is built
+     * If the first argument is "streaming", the streaming FSD is only run on the tweets of the database in
+     * chronological order, with a one day window, and its clusters are written as soon as they are finished
+     * If the first argument is "pipeline", the tweets of the database are only read, tokenized, vectorized, clustered
+     * and written concurrently, without any window
+     * If the first argument is "matrixModes", the frequency matrix is only built with and without the Lucene index,
+     * and the time and the heap of both builds are displayed
+     * The evaluation itself needs the whole frequency matrix (clusters and themes vectors), so that it stays in phases
+     * @param args Optional mode : "sweep", "approximate", "streaming", "pipeline" or "matrixModes"
      * @throws IOException
      * @throws org.apache.lucene.queryparser.classic.ParseException 
      */
     public static void main(String[] args) throws IOException, org.apache.lucene.queryparser.classic.ParseException
     {
+        Metrics.get().register();
+        Metrics.get().startLog(METRICS_LOG_FILE_PATH, METRICS_LOG_PERIOD);
+        long stageTime;
+        
+        //========== STREAMING FSD CLUSTERING ==========
+        if(args.length > 0 && STREAMING_MODE.equals(args[0]))
+        {
+            System.out.println("========== STREAMING FSD CLUSTERING ==========");
+            FSDBuilder.runStreamingFSDClustering(false, FSDBuilder.STREAMING_WINDOW_DURATION);
+            return;
+        }
+        
+        //========== FREQUENCY MATRIX MODES ==========
+        if(args.length > 0 && MATRIX_COMPARISON_MODE.equals(args[0]))
+        {
+            System.out.println("========== FREQUENCY MATRIX MODES ==========");
+            FrequencyMatrixBuilder.compareFrequencyMatrixModes();
+            return;
+        }
+        
+        //========== PIPELINED FSD CLUSTERING ==========
+        if(args.length > 0 && PIPELINE_MODE.equals(args[0]))
+        {
+            System.out.println("========== PIPELINED FSD CLUSTERING ==========");
+            FSDBuilder.runPipelinedFSDClustering(false);
+            return;
+        }
+        
         //========== BUILDING TWEETS FREQUENCY MATRIX - LUCENE ==========
         System.out.println("========== TWEETS FREQUENCY MATRIX ==========");
+        stageTime = System.nanoTime();
         
         //Variables
-        HashMap<String, HashMap<String, Long>> tweetsFreqMatrix = new HashMap<String, HashMap<String, Long>>();
-        HashSet<String> tweetsUniqueTerms = new HashSet<String>();
+        LongHashMap<SparseVector> tweetsFreqMatrix = new LongHashMap<SparseVector>();
+        TermDictionary dictionary = new TermDictionary();
         
-        //Building tweets frequency matrix
-        FrequencyMatrixBuilder.getTermsFrequencyMatrix(tweetsFreqMatrix, tweetsUniqueTerms, null);
-        FrequencyMatrixBuilder.exportFrequencyMatrix(tweetsFreqMatrix, tweetsUniqueTerms);
+        //Building tweets frequency matrix, or mapping the one of the last run if the tweets did not change
+        FrequencyMatrixBuilder.loadTermsFrequencyMatrix(tweetsFreqMatrix, dictionary);
+        FrequencyMatrixBuilder.exportFrequencyMatrix(tweetsFreqMatrix, dictionary);
+        Metrics.get().addStageTime("frequencyMatrixLoading", stageTime);
         
         
         
@@ -56,9 +125,8 @@ public class ClusteringEvaluator
         System.out.println("========== REAL CLUSTERING ==========");
         
         //Variables
-        HashSet<String> realClustersUniqueTerms = new HashSet<String>();
-        HashMap<String, HashMap<String, Long>> realClustersThemesFreqMatrix = new HashMap<String, HashMap<String, Long>>();
-        HashMap<Integer, List<String>> realClustering;
+        LongHashMap<SparseVector> realClustersThemesFreqMatrix = new LongHashMap<SparseVector>();
+        HashMap<Integer, long[]> realClustering;
         
         //Importing clusterings
         realClustering = importClustering(REAL_CLUSTERING_FILE_PATH);
@@ -66,49 +134,261 @@ public class ClusteringEvaluator
         //Building real clusters themes frequency matrix
         HashMap<Integer, String> clusterThemes = importClusterThemes();
         List<HashMap<String, String>> clusterThemesCompatible = getMatrixFrequencyCompatibleThemes(clusterThemes);
-        FrequencyMatrixBuilder.getTermsFrequencyMatrix(realClustersThemesFreqMatrix, realClustersUniqueTerms, clusterThemesCompatible);
+        FrequencyMatrixBuilder.getTermsFrequencyMatrix(realClustersThemesFreqMatrix, dictionary, clusterThemesCompatible);
+        
+        
+        
+        //========== FSD THRESHOLD SWEEP ==========
+        if(args.length > 0 && SWEEP_MODE.equals(args[0]))
+        {
+            System.out.println("========== FSD THRESHOLD SWEEP ==========");
+            stageTime = System.nanoTime();
+            reportFSDThresholdSweep(realClustering, dictionary, tweetsFreqMatrix, Runtime.getRuntime().availableProcessors());
+            Metrics.get().addStageTime("fsdThresholdSweep", stageTime);
+            return;
+        }
         
+        //========== APPROXIMATE FSD CLUSTERING ==========
+        if(args.length > 0 && APPROXIMATE_MODE.equals(args[0]))
+        {
+            System.out.println("========== APPROXIMATE FSD CLUSTERING ==========");
+            compareApproximateFSDClustering(dictionary, tweetsFreqMatrix);
+            return;
+        }
         
         
         //========== K-MEANS CLUSTERING ==========
         System.out.println("========== K-MEANS CLUSTERING ==========");
+        stageTime = System.nanoTime();
         //Variables
-        HashMap<Integer, HashMap<String, Long>> kmeansClustersFreqMatrix;
-        HashMap<Integer, List<String>> kmeansClustering;
-        HashMap<Integer, Integer> kmeansClustersLinked = null;
+        HashMap<Integer, SparseVector> kmeansClustersFreqMatrix;
+        HashMap<Integer, long[]> kmeansClustering;
+        HashMap<Integer, Integer> kmeansClustersLinked, kmeansThemesLinked;
+        ContingencyTable kmeansTable;
+        ClusteringReport kmeansReport;
         double kmeansAccuracy;
 
         //Importing clusterings
         kmeansClustering = importClustering(KMEANS_CLUSTERING_FILE_PATH);
         //Building frequency matrix
-        kmeansClustersFreqMatrix = getClustersFrequencyMatrix(kmeansClustering, tweetsFreqMatrix);
-        //Linking real clusters themes with the algorithm clusters using the cosine similarity
-        kmeansClustersLinked = linkRealClustersWithCorrectTweets(realClustering, kmeansClustersLinked, kmeansClustering);
+        kmeansClustersFreqMatrix = getClustersFrequencyMatrix(kmeansClustering, tweetsFreqMatrix, Runtime.getRuntime().availableProcessors());
+        //Counting the tweets shared by each pair of real and algorithm clusters
+        kmeansTable = new ContingencyTable(realClustering, kmeansClustering);
+        //Linking real clusters with the algorithm clusters sharing the most tweets with them
+        kmeansClustersLinked = linkRealClustersWithCorrectTweets(kmeansTable);
         //Calculating clustering algorithm accuracy
-        kmeansAccuracy = getClusteringAccuracy(realClustering, kmeansClustersLinked, kmeansClustering);
-        System.out.println(String.format("K-means algorithm :\nAccuracy : %f\nClusters : %d", kmeansAccuracy, kmeansClustering.size()));
+        kmeansAccuracy = getClusteringAccuracy(kmeansTable, kmeansClustersLinked);
+        //Calculating every other metric from the same contingency table
+        kmeansReport = new ClusteringReport(kmeansTable, kmeansAccuracy);
+        System.out.println("K-means algorithm :\n" + kmeansReport);
+        System.out.println(String.format("F-score with the clusters linked one-to-one : %f", getClusteringAccuracy(kmeansTable, linkRealClustersOneToOne(kmeansTable))));
+        //Linking the algorithm clusters with the real clusters themes using the cosine similarity of their terms vectors
+        kmeansThemesLinked = linkRealClustersWithCosSimilarity(realClustersThemesFreqMatrix, kmeansClustersFreqMatrix);
+        System.out.println(String.format("F-score with the clusters linked to the themes : %f", getClusteringAccuracy(kmeansTable, kmeansThemesLinked)));
+        Metrics.get().addStageTime("kmeansEvaluation", stageTime);
         
         
         //========== FSD CLUSTERING ==========
         System.out.println("========== FSD CLUSTERING ==========");
+        stageTime = System.nanoTime();
         //Variables
-        HashMap<Integer, HashMap<String, Long>> fsdClustersFreqMatrix;
-        HashMap<Integer, List<String>> fsdClustering;
-        HashMap<Integer, Integer> fsdClustersLinked = null;
+        HashMap<Integer, SparseVector> fsdClustersFreqMatrix;
+        HashMap<Integer, long[]> fsdClustering;
+        HashMap<Integer, Integer> fsdClustersLinked, fsdThemesLinked;
+        ContingencyTable fsdTable;
+        ClusteringReport fsdReport;
+        FSDResultStore fsdStore;
         double fsdAccuracy;
         
-        //Running FSD algorithm on tweets and exporting clustering
-        FSDBuilder.runFSDClustering(tweetsUniqueTerms, tweetsFreqMatrix);
+        //Running FSD algorithm on tweets, the clustering being saved in the results database and kept in memory
+        fsdStore = openFSDResultStore();
+        try
+        {
+            fsdClustering = FSDBuilder.runFSDClustering(dictionary, tweetsFreqMatrix, fsdStore);
+            //Building frequency matrix
+            fsdClustersFreqMatrix = getClustersFrequencyMatrix(fsdClustering, tweetsFreqMatrix, Runtime.getRuntime().availableProcessors());
+            //Counting the tweets shared by each pair of real and algorithm clusters
+            fsdTable = new ContingencyTable(realClustering, fsdClustering);
+            //Linking real clusters with the algorithm clusters sharing the most tweets with them
+            fsdClustersLinked = linkRealClustersWithCorrectTweets(fsdTable);
+            //Calculating clustering algorithm accuracy
+            fsdAccuracy = getClusteringAccuracy(fsdTable, fsdClustersLinked);
+            //Calculating every other metric from the same contingency table
+            fsdReport = new ClusteringReport(fsdTable, fsdAccuracy);
+            System.out.println("FSD algorithm :\n" + fsdReport);
+            saveFSDReport(fsdStore, fsdReport);
+        }
+        finally
+        {
+            closeFSDResultStore(fsdStore);
+        }
+        System.out.println(String.format("F-score with the clusters linked one-to-one : %f", getClusteringAccuracy(fsdTable, linkRealClustersOneToOne(fsdTable))));
+        //Linking the algorithm clusters with the real clusters themes using the cosine similarity of their terms vectors
+        fsdThemesLinked = linkRealClustersWithCosSimilarity(realClustersThemesFreqMatrix, fsdClustersFreqMatrix);
+        System.out.println(String.format("F-score with the clusters linked to the themes : %f", getClusteringAccuracy(fsdTable, fsdThemesLinked)));
+        Metrics.get().addStageTime("fsdEvaluation", stageTime);
+    }
+    
+    /**
+     * Opens the FSD results database (See FSDResultStore)
+     * @return The results database, or null if it cannot be opened, the FSD clustering being then kept in memory only
+     */
+    private static FSDResultStore openFSDResultStore()
+    {
+        try
+        {
+            return new FSDResultStore(FSDBuilder.FSD_RESULTS_DATABASE);
+        }
+        catch(ClassNotFoundException ex)
+        {
+            Logger.getLogger(ClusteringEvaluator.class.getName()).log(Level.SEVERE, null, ex);
+        }
+        catch(SQLException ex)
+        {
+            Logger.getLogger(ClusteringEvaluator.class.getName()).log(Level.SEVERE, null, ex);
+        }
+        return null;
+    }
+    
+    /**
+     * Closes the FSD results database
+     * @param store The results database, null if it could not be opened
+     */
+    private static void closeFSDResultStore(FSDResultStore store)
+    {
+        if(store == null)
+        {
+            return;
+        }
+        try
+        {
+            store.close();
+        }
+        catch(SQLException ex)
+        {
+            Logger.getLogger(ClusteringEvaluator.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+    
+    /**
+     * Saves the evaluation of the last FSD run of the results database
+     * @param store The results database, null if it could not be opened
+     * @param report The evaluation of the FSD clustering
+     */
+    private static void saveFSDReport(FSDResultStore store, ClusteringReport report)
+    {
+        if(store == null || store.getLastRunId() == -1)
+        {
+            return;
+        }
+        try
+        {
+            store.saveReport(store.getLastRunId(), report);
+        }
+        catch(SQLException ex)
+        {
+            Logger.getLogger(ClusteringEvaluator.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+    
+    /**
+     * Runs the FSD for every threshold of SWEEP_THRESHOLDS and every terms weighting (See TermWeighting), with the exact
+     * and the approximate seeds search, the configurations running concurrently on the same tweets vectors, then displays for each configuration
+     * its accuracy against the real clustering, its number of clusters and its wall time
+     * The wall time of a configuration includes the time it shares the processors with the other ones
+     * @param realClustering The real clustering
+     * @param dictionary The dictionary of every term contained by the tweets
+     * @param freqMatrix The tweets frequency matrix
+     * @param threadsNumber The number of configurations running at the same time
+     * @throws IOException 
+     */
+    private static void reportFSDThresholdSweep(final HashMap<Integer, long[]> realClustering, final TermDictionary dictionary,
+            final LongHashMap<SparseVector> freqMatrix, int threadsNumber) throws IOException
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(threadsNumber);
+        List<Future<String>> results = new ArrayList<Future<String>>();
+        long wallTime = System.nanoTime();
+        StringBuilder report = new StringBuilder("Threshold\tWeighting\tSearch\tF-score\tNMI\tARI\tClusters\tTime (ms)\n");
         
-        //Importing clusterings
-        fsdClustering = importClustering(FSDBuilder.FSD_CLUSTERING_FILE_PATH);
-        //Building frequency matrix
-        fsdClustersFreqMatrix = getClustersFrequencyMatrix(fsdClustering, tweetsFreqMatrix);
-        //Linking real clusters themes with the algorithm clusters using the cosine similarity
-        fsdClustersLinked = linkRealClustersWithCorrectTweets(realClustering, fsdClustersLinked, fsdClustering);
-        //Calculating clustering algorithm accuracy
-        fsdAccuracy = getClusteringAccuracy(realClustering, fsdClustersLinked, fsdClustering);
-        System.out.println(String.format("FSD algorithm :\nAccuracy : %f\nClusters : %d", fsdAccuracy, fsdClustering.size()));
+        for(final double threshold : SWEEP_THRESHOLDS)
+        {
+            for(final TermWeighting weighting : TermWeighting.values())
+            {
+                for(final boolean approximate : new boolean[] {false, true})
+                {
+                    results.add(executor.submit(new Callable<String>()
+                    {
+                        @Override
+                        public String call() throws IOException
+                        {
+                            long time = System.nanoTime();
+                            HashMap<Integer, long[]> clustering = FSDBuilder.getFSDClustering(dictionary, freqMatrix, approximate, threshold, weighting);
+                            ContingencyTable table = new ContingencyTable(realClustering, clustering);
+                            ClusteringReport clusteringReport = new ClusteringReport(table, getClusteringAccuracy(table, linkRealClustersWithCorrectTweets(table)));
+                            time = System.nanoTime() - time;
+                            return String.format("%.2f\t%s\t%s\t%f\t%f\t%f\t%d\t%d\n", threshold, weighting, approximate ? "LSH" : "exact",
+                                    clusteringReport.getFScore(), clusteringReport.getNormalizedMutualInformation(), clusteringReport.getAdjustedRandIndex(),
+                                    clustering.size(), time / 1000000);
+                        }
+                    }));
+                }
+            }
+        }
+        
+        try
+        {
+            for(Future<String> result : results)
+            {
+                report.append(result.get());
+            }
+        }
+        catch(InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("FSD threshold sweep interrupted", ex);
+        }
+        catch(ExecutionException ex)
+        {
+            throw new IOException("FSD threshold sweep failed", ex.getCause());
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+        
+        report.append(String.format("Wall time : %d ms, %d threads\n", (System.nanoTime() - wallTime) / 1000000, threadsNumber));
+        System.out.print(report);
+    }
+    
+    /**
+     * Compares the approximate FSD clustering (locality-sensitive hashing) with the exact one
+     * The exact clustering is used as the real clustering of the F-score, so that the accuracy
+     * measures how close the approximate search is to the exact search
+     * @param dictionary The dictionary of every term contained by the tweets
+     * @param freqMatrix The tweets frequency matrix
+     * @throws IOException 
+     */
+    private static void compareApproximateFSDClustering(TermDictionary dictionary, LongHashMap<SparseVector> freqMatrix) throws IOException
+    {
+        HashMap<Integer, long[]> exactClustering, approximateClustering;
+        HashMap<Integer, Integer> approximateClustersLinked;
+        long exactTime, approximateTime;
+        double approximateAccuracy;
+        
+        //Running both FSD algorithms
+        exactTime = System.nanoTime();
+        exactClustering = FSDBuilder.getFSDClustering(dictionary, freqMatrix, false);
+        exactTime = System.nanoTime() - exactTime;
+        approximateTime = System.nanoTime();
+        approximateClustering = FSDBuilder.getFSDClustering(dictionary, freqMatrix, true);
+        approximateTime = System.nanoTime() - approximateTime;
+        
+        //Linking the exact clusters with the approximate clusters, then calculating the accuracy
+        ContingencyTable approximateTable = new ContingencyTable(exactClustering, approximateClustering);
+        approximateClustersLinked = linkRealClustersWithCorrectTweets(approximateTable);
+        approximateAccuracy = getClusteringAccuracy(approximateTable, approximateClustersLinked);
+        System.out.println(String.format("Approximate FSD algorithm :\nAccuracy against exact FSD : %f\nClusters : %d (exact : %d)\nTime : %d ms (exact : %d ms)",
+                approximateAccuracy, approximateClustering.size(), exactClustering.size(), approximateTime / 1000000, exactTime / 1000000));
     }
     
     /**
@@ -118,27 +398,30 @@ public class ClusteringEvaluator
      * With P = precision = number of CORRECT tweets in the NEW cluster / TOTAL number of tweets in the NEW cluster
      * And R = recall = number of CORRECT tweets in the NEW cluster / TOTAL number of tweets in the REAL cluster
      * So that, a clustering F-score is the average of every cluster F-score
-     * @param realClustering The real (correct) clustering
-     * @param newClusteringLinked For each new cluster ID, which real cluster ID is it linked with
-     * @param newClustering The new cluster to evaluate
+     * @param table The contingency table of the real clustering and the new clustering
+     * @param newClusteringLinked For each new cluster ID, which real cluster ID is it linked with (a missing cluster ID scores 0)
      * @return The F-score value (the highest one is the best)
      */
-    private static double getClusteringAccuracy(HashMap<Integer, List<String>> realClustering, HashMap<Integer, Integer> newClusteringLinked, HashMap<Integer, List<String>> newClustering)
+    static double getClusteringAccuracy(ContingencyTable table, HashMap<Integer, Integer> newClusteringLinked)
     {
         System.out.println("Calculating cluster accuracy with F-score...");
-        List<String> correctTweets, realClusterTweets, newClusterTweets;
-        List<Double> clustersAccuracy = new ArrayList<Double>();
-        int newClustersNumber = newClustering.size();
+        int newClustersNumber = table.getRowsNumber();
         double clusteringAccuracy = 0;
         double clusterAccuracy;
+        Integer realClusterId;
+        int column;
         
-        for(Integer newClusterId : newClustering.keySet())
+        for(int row = 0; row < newClustersNumber; ++row)
         {
-            realClusterTweets = realClustering.get(newClusteringLinked.get(newClusterId));
-            newClusterTweets = newClustering.get(newClusterId);
-            correctTweets = getIntersection(realClusterTweets, newClusterTweets);
+            realClusterId = newClusteringLinked.get(table.getNewClusterId(row));
+            column = realClusterId == null ? -1 : table.getColumn(realClusterId);
             
-            clusterAccuracy = calculateFScore(newClusterTweets.size(), realClusterTweets.size(), correctTweets.size());
+            //A cluster which is not linked, or linked to a theme without any real cluster, has no correct tweet
+            if(column == -1)
+            {
+                continue;
+            }
+            clusterAccuracy = calculateFScore(table.getNewClusterSize(row), table.getRealClusterSize(column), table.getCount(row, column));
             clusteringAccuracy += clusterAccuracy / newClustersNumber;
         }
         
@@ -169,101 +452,108 @@ public class ClusteringEvaluator
     }
     
     /**
-     * Returns the intersection of two lists
-     * @param list1 The first list
-     * @param list2 The second list
-     * @return The intersection of the lists
+     * Links each calculated cluster to the real cluster sharing the most tweets with it (See ClusterMatcher)
+     * A calculated cluster sharing no tweet with any real cluster is not linked
+     * @param table The contingency table of the real clustering and the calculated clustering
+     * @return For each calculated cluster ID, the real cluster ID it is linked with
      */
-    private static List<String> getIntersection(List<String> list1, List<String> list2)
+    static HashMap<Integer, Integer> linkRealClustersWithCorrectTweets(ContingencyTable table)
     {
-        List<String> list = new ArrayList<String>();
-
-        for (String t : list1)
-        {
-            if(list2.contains(t))
-            {
-                list.add(t);
-            }
-        }
-
-        return list;
+        System.out.println("Linking real clusters with calculated clusters...");
+        HashMap<Integer, Integer> clustersLinked = ClusterMatcher.getBestOverlapMatching(table);
+        System.out.println("Done");
+        
+        return clustersLinked;
     }
     
-    private static HashMap<Integer, Integer> linkRealClustersWithCorrectTweets(HashMap<Integer, List<String>> realClustering, HashMap<Integer, Integer> newClusteringLinked, HashMap<Integer, List<String>> newClustering)
+    /**
+     * Links the calculated clusters to the real clusters one-to-one, maximizing the number of correct tweets (See ClusterMatcher)
+     * @param table The contingency table of the real clustering and the calculated clustering
+     * @return For each linked calculated cluster ID, the real cluster ID it is linked with
+     */
+    static HashMap<Integer, Integer> linkRealClustersOneToOne(ContingencyTable table)
     {
-        System.out.println("Linking real clusters with calculated clusters...");
-        
-        List<String> correctTweets, realClusterTweets, newClusterTweets;
-        HashMap<Integer, Integer> clustersLinked = new HashMap<Integer, Integer>();
-        int correctTweetsNumber, tmpCorrectTweetsNumber;
-        Integer bestClusterId = null;
-        
-        for(Integer newClusterId : newClustering.keySet())
-        {
-            correctTweetsNumber = 0;
-            newClusterTweets = newClustering.get(newClusterId);
-            
-            for(Integer realClusterId : realClustering.keySet())
-            {
-                realClusterTweets = realClustering.get(realClusterId);
-                correctTweets = getIntersection(realClusterTweets, newClusterTweets);
-                tmpCorrectTweetsNumber = correctTweets.size();
-                
-                if(tmpCorrectTweetsNumber > correctTweetsNumber)
-                {
-                    bestClusterId = realClusterId;
-                }
-            }
-            
-            clustersLinked.put(newClusterId, bestClusterId);
-        }
-        
+        System.out.println("Linking real clusters with calculated clusters one-to-one...");
+        HashMap<Integer, Integer> clustersLinked = ClusterMatcher.getOptimalMatching(table);
         System.out.println("Done");
         
         return clustersLinked;
     }
     
     /**
-     * DO NOT USE => BUUUUUUUUUUUUUUUUUUUUUUUUUUUUUUUUUUUUUUUUUUUUUUUUUUUUUUUUUUUUUUUUUUUUUUUGS !
      * Links calculated clusters to the real clusters,
      * basing on the cosine similarity between the term vector of the
-     * real cluster theme, and the term vector of the calculated cluster
+     * real cluster theme, and the term vector of the calculated cluster (See getClustersFrequencyMatrix)
+     * Only the terms of the themes are compared : a calculated cluster holding none of them is not linked
      * @param realClustersThemesFreqMatrix The frequency matrix (many terms vectors) of the real clusters themes
-     * @param realClustersUniqueTerms The set containing every (unique) term in the real clusters themes
      * @param newClustersFreqMatrix The frequency matrix (many terms vectors) of the calculated cluster to link
-     * @return 
+     * @return For each linked calculated cluster ID, the real cluster ID of the closest theme
      */
-    private static HashMap<Integer, Integer> linkRealClustersWithCosSimilarity(HashMap<String, HashMap<String, Long>> realClustersThemesFreqMatrix, HashSet<String> realClustersUniqueTerms, HashMap<Integer, HashMap<String, Long>> newClustersFreqMatrix)
+    private static HashMap<Integer, Integer> linkRealClustersWithCosSimilarity(LongHashMap<SparseVector> realClustersThemesFreqMatrix, HashMap<Integer, SparseVector> newClustersFreqMatrix)
     {
         HashMap<Integer, Integer> clustersLinked = new HashMap<Integer, Integer>();
+        SparseVectorBuilder vectorBuilder = new SparseVectorBuilder();
         double minCos, tmpCos;
-        Integer bestCluster = null;
+        Integer bestCluster;
         
         System.out.println("Linking real clusters with calculated clusters...");
         
+        //Marking the terms of the real clusters themes, the only ones compared
+        int maxTermId = -1;
+        for(int position = 0; position < realClustersThemesFreqMatrix.size(); ++position)
+        {
+            int[] termIds = realClustersThemesFreqMatrix.getValue(position).getTermIds();
+            if(termIds.length > 0)
+            {
+                maxTermId = Math.max(maxTermId, termIds[termIds.length - 1]);
+            }
+        }
+        boolean[] themesTerms = new boolean[maxTermId + 1];
+        for(int position = 0; position < realClustersThemesFreqMatrix.size(); ++position)
+        {
+            for(int termId : realClustersThemesFreqMatrix.getValue(position).getTermIds())
+            {
+                themesTerms[termId] = true;
+            }
+        }
+        
         //Browsing each calculated cluster ID
         for(Integer newClusterId : newClustersFreqMatrix.keySet())
         {
-            HashMap<String, Long> newTermsVector = newClustersFreqMatrix.get(newClusterId);
-            Long[] newClusterFreqVector = FSDBuilder.getFrequencyVector(realClustersUniqueTerms, newTermsVector);
+            //Keeping only the terms of the real clusters themes in the calculated cluster terms vector
+            SparseVector newTermsVector = newClustersFreqMatrix.get(newClusterId);
+            int[] termIds = newTermsVector.getTermIds();
+            float[] weights = newTermsVector.getWeights();
+            for(int i = 0; i < termIds.length && termIds[i] <= maxTermId; ++i)
+            {
+                if(themesTerms[termIds[i]])
+                {
+                    vectorBuilder.add(termIds[i], weights[i]);
+                }
+            }
+            SparseVector newClusterFreqVector = vectorBuilder.build();
             minCos = -1;
+            bestCluster = null;
             
             //Browsing the real clusters ID
-            for(String realClusterId : realClustersThemesFreqMatrix.keySet())
+            for(int position = 0; position < realClustersThemesFreqMatrix.size(); ++position)
             {
-                HashMap<String, Long> realTermsVector = realClustersThemesFreqMatrix.get(realClusterId);
-                Long[] realClusterFreqVector = FSDBuilder.getFrequencyVector(realClustersUniqueTerms, realTermsVector);
+                SparseVector realClusterFreqVector = realClustersThemesFreqMatrix.getValue(position);
                 
                 tmpCos = FSDBuilder.getCosineSimilarity(newClusterFreqVector, realClusterFreqVector);
                 if(tmpCos > minCos)
                 {
                     minCos = tmpCos;
-                    bestCluster = Integer.parseInt(realClusterId);
+                    bestCluster = (int) realClustersThemesFreqMatrix.getKey(position);
                 }
             }
             
             //Assigning the closest (regarding to cosine similarity) real cluster ID to a calculated cluster ID
-            clustersLinked.put(newClusterId, bestCluster);
+            //Without any theme term, every cosine similarity is NaN and the cluster stays unlinked
+            if(bestCluster != null)
+            {
+                clustersLinked.put(newClusterId, bestCluster);
+            }
         }
         
         System.out.println("Done");
@@ -273,44 +563,83 @@ public class ClusteringEvaluator
     
     /**
      * Builds a frequency matrix containing a terms vector for each cluster, sum of tweets terms vector contained by the current cluster
+     * Each cluster only browses its own tweets, summed in a primitive accumulator (See SparseVectorAccumulator).
+     * The clusters are split between several threads, each thread having its own accumulator.
      * @param clustering The clustering to study
-     * @param tweetsFrequencyMatrix The terms vector of every tweets in the clusters
+     * @param tweetsFrequencyMatrix The terms vector of every tweets in the clusters (a tweet without terms vector is ignored)
+     * @param threadsNumber The number of threads summing the clusters
      * @return The clusters frequency matrix
+     * @throws IOException 
      */
-    private static HashMap<Integer, HashMap<String, Long>> getClustersFrequencyMatrix(HashMap<Integer, List<String>> clustering, HashMap<String, HashMap<String, Long>> tweetsFrequencyMatrix)
+    private static HashMap<Integer, SparseVector> getClustersFrequencyMatrix(HashMap<Integer, long[]> clustering, final LongHashMap<SparseVector> tweetsFrequencyMatrix, int threadsNumber) throws IOException
     {
         System.out.println("Building cluster frequency matrix...");
-        HashMap<Integer, HashMap<String, Long>> clusterFrequencyMatrix = new HashMap<Integer, HashMap<String, Long>>();
-        Long occurrences;
+        HashMap<Integer, SparseVector> clusterFrequencyMatrix = new HashMap<Integer, SparseVector>();
+        final List<Integer> clusterIds = new ArrayList<Integer>(clustering.keySet());
+        final List<long[]> clustersTweets = new ArrayList<long[]>();
+        for(Integer clusterId : clusterIds)
+        {
+            clustersTweets.add(clustering.get(clusterId));
+        }
         
-        //Browsing each cluster
-        for(Integer clusterId : clustering.keySet())
+        //Thread t sums the clusters t, t + threadsNumber, t + 2 * threadsNumber...
+        threadsNumber = Math.max(1, Math.min(threadsNumber, clusterIds.size()));
+        final int stride = threadsNumber;
+        ExecutorService executor = Executors.newFixedThreadPool(threadsNumber);
+        List<Future<SparseVector[]>> results = new ArrayList<Future<SparseVector[]>>();
+        for(int thread = 0; thread < threadsNumber; ++thread)
         {
-            HashMap<String, Long> clusterTermsVector = new HashMap<String, Long>();
-            
-            //Browsing each tweet in the cluster
-            for(String tweetId : tweetsFrequencyMatrix.keySet())
+            final int first = thread;
+            results.add(executor.submit(new Callable<SparseVector[]>()
             {
-                //Adding the tweet terms vector to the cluster one
-                HashMap<String, Long> tweetsTermVector = tweetsFrequencyMatrix.get(tweetId);
-                
-                //Browsing the terms of the current tweets
-                for(String term : tweetsTermVector.keySet())
+                @Override
+                public SparseVector[] call()
                 {
-                    //Adding the term occurrences to the clusters frequency matrix
-                    occurrences = clusterTermsVector.get(term);
-                    if(occurrences == null)
+                    SparseVectorAccumulator accumulator = new SparseVectorAccumulator();
+                    SparseVector[] vectors = new SparseVector[(clustersTweets.size() - first + stride - 1) / stride];
+                    
+                    //Browsing each cluster of the thread
+                    for(int i = first, j = 0; i < clustersTweets.size(); i += stride, ++j)
                     {
-                        clusterTermsVector.put(term, tweetsTermVector.get(term));
-                    }
-                    else
-                    {
-                        clusterTermsVector.put(term, occurrences + tweetsTermVector.get(term));
+                        //Adding the terms vector of each tweet in the cluster
+                        for(long tweetId : clustersTweets.get(i))
+                        {
+                            SparseVector tweetTermsVector = tweetsFrequencyMatrix.get(tweetId);
+                            if(tweetTermsVector != null)
+                            {
+                                accumulator.add(tweetTermsVector);
+                            }
+                        }
+                        vectors[j] = accumulator.build();
                     }
+                    return vectors;
+                }
+            }));
+        }
+        
+        try
+        {
+            for(int thread = 0; thread < threadsNumber; ++thread)
+            {
+                SparseVector[] vectors = results.get(thread).get();
+                for(int j = 0; j < vectors.length; ++j)
+                {
+                    clusterFrequencyMatrix.put(clusterIds.get(thread + j * stride), vectors[j]);
                 }
             }
-            
-            clusterFrequencyMatrix.put(clusterId, clusterTermsVector);
+        }
+        catch(InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Cluster frequency matrix interrupted", ex);
+        }
+        catch(ExecutionException ex)
+        {
+            throw new IOException("Cluster frequency matrix failed", ex.getCause());
+        }
+        finally
+        {
+            executor.shutdownNow();
         }
         
         System.out.println("Done");
@@ -371,34 +700,51 @@ public class ClusteringEvaluator
     
     /**
      * Import a clustering from a file
+     * The text file is parsed once, then its binary copy (See BinaryFormat) is mapped as long as it is up to date
+     * The binary copy is written in CACHE_DIRECTORY, so that the resources directory is only read
      * @param filePath The file to parse
-     * @return The importer clustering
+     * @return The importer clustering, with the tweets ID of each cluster in ascending order
      * @throws IOException 
      */
-    private static HashMap<Integer, List<String>> importClustering(String filePath) throws IOException
+    static HashMap<Integer, long[]> importClustering(String filePath) throws IOException
     {
         System.out.println("Importing clustering...");
+        String fileName = filePath.substring(Math.max(filePath.lastIndexOf('\\'), filePath.lastIndexOf('/')) + 1);
+        String binaryFilePath = CACHE_DIRECTORY + fileName + BinaryFormat.EXTENSION;
+        if(BinaryFormat.isUpToDate(binaryFilePath, filePath))
+        {
+            HashMap<Integer, long[]> clustering = BinaryFormat.readClustering(binaryFilePath);
+            System.out.println("Done");
+            return clustering;
+        }
+        
         String line;
         Integer clusterId;
-        List<String> tweetsList;
+        LongList tweetsList;
         String[] array;
-        HashMap<Integer, List<String>> clustering = new HashMap<Integer, List<String>>();
+        HashMap<Integer, LongList> clusteringLists = new HashMap<Integer, LongList>();
+        HashMap<Integer, long[]> clustering = new HashMap<Integer, long[]>();
         BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(filePath)));
         
         while((line = reader.readLine()) != null)
         {
             array = line.split(" ");
             clusterId = Integer.parseInt(array[0]);
-            tweetsList = clustering.get(clusterId);
+            tweetsList = clusteringLists.get(clusterId);
             if(tweetsList == null)
             {
-                tweetsList = new ArrayList();
-                clustering.put(clusterId, tweetsList);
+                tweetsList = new LongList();
+                clusteringLists.put(clusterId, tweetsList);
             }
-            tweetsList.add(array[1]);
+            tweetsList.add(Long.parseLong(array[1]));
         }
         
         reader.close();
+        for(Integer key : clusteringLists.keySet())
+        {
+            clustering.put(key, clusteringLists.get(key).toSortedArray());
+        }
+        BinaryFormat.writeClustering(binaryFilePath, clustering);
         System.out.println("Done");
         
         return clustering;
@@ -0,0 +1,230 @@
+package ClusteringEvaluator;
+
+
+/**
+ * External evaluation of a new clustering against a real clustering, every metric being read
+ * from the same contingency table in a single pass over its non-zero cells
+ *
+ * With n(i, j) the cell of the new cluster i and the real cluster j, a(i) the sum of the row i,
+ * b(j) the sum of the column j and N the sum of every cell : the tweets which are not in both
+ * clusterings are ignored, and a tweet listed in several clusters is counted once per cluster.
+ *
+ * Purity = sum(max_j n(i, j)) / N
+ * NMI = I(new, real) / sqrt(H(new) * H(real))
+ * Adjusted Rand index = (index - expected index) / (max index - expected index), counted over the pairs of tweets
+ * B-cubed precision = sum(n(i, j)^2 / a(i)) / N, B-cubed recall = sum(n(i, j)^2 / b(j)) / N
+ * Homogeneity = 1 - H(real | new) / H(real), completeness = 1 - H(new | real) / H(new),
+ * V-measure = harmonic mean of the homogeneity and the completeness
+ */
+public class ClusteringReport
+{
+    /** Averaged F-score of the linked clusters (See ClusteringEvaluator.getClusteringAccuracy) */
+    private final double fScore;
+    /** Number of new clusters */
+    private final int newClustersNumber;
+    /** Number of real clusters */
+    private final int realClustersNumber;
+    /** Number of tweets in both clusterings (N) */
+    private final long tweetsNumber;
+
+    private final double purity;
+    private final double normalizedMutualInformation;
+    private final double adjustedRandIndex;
+    private final double bCubedPrecision;
+    private final double bCubedRecall;
+    private final double homogeneity;
+    private final double completeness;
+    private final double vMeasure;
+
+
+    /**
+     * Calculates every metric from a contingency table
+     * @param table The contingency table of the real clustering and the new clustering
+     * @param fScore The averaged F-score of the new clustering, which depends on the linking of the clusters
+     */
+    public ClusteringReport(ContingencyTable table, double fScore)
+    {
+        this.fScore = fScore;
+        this.newClustersNumber = table.getRowsNumber();
+        this.realClustersNumber = table.getColumnsNumber();
+
+        long[] columnSums = new long[realClustersNumber];
+        double[] columnSquares = new double[realClustersNumber];
+        long total = 0, maxSum = 0;
+        double cellsPairs = 0, rowsPairs = 0, cellsEntropy = 0, rowsEntropy = 0, precisionSum = 0;
+
+        //Single pass over the non-zero cells, row by row
+        for(int row = 0; row < newClustersNumber; ++row)
+        {
+            int[] columns = table.getCellColumns(row);
+            int[] counts = table.getCellCounts(row);
+            long rowSum = 0, rowMax = 0;
+            double rowSquares = 0;
+
+            for(int i = 0; i < counts.length; ++i)
+            {
+                long count = counts[i];
+                rowSum += count;
+                rowMax = Math.max(rowMax, count);
+                rowSquares += (double) count * count;
+                columnSums[columns[i]] += count;
+                columnSquares[columns[i]] += (double) count * count;
+                cellsPairs += getPairsNumber(count);
+                cellsEntropy += xLogX(count);
+            }
+
+            if(rowSum > 0)
+            {
+                total += rowSum;
+                maxSum += rowMax;
+                rowsPairs += getPairsNumber(rowSum);
+                rowsEntropy += xLogX(rowSum);
+                precisionSum += rowSquares / rowSum;
+            }
+        }
+
+        double columnsPairs = 0, columnsEntropy = 0, recallSum = 0;
+        for(int column = 0; column < realClustersNumber; ++column)
+        {
+            if(columnSums[column] > 0)
+            {
+                columnsPairs += getPairsNumber(columnSums[column]);
+                columnsEntropy += xLogX(columnSums[column]);
+                recallSum += columnSquares[column] / columnSums[column];
+            }
+        }
+        this.tweetsNumber = total;
+
+        if(total == 0)
+        {
+            purity = normalizedMutualInformation = adjustedRandIndex = 0;
+            bCubedPrecision = bCubedRecall = homogeneity = completeness = vMeasure = 0;
+            return;
+        }
+
+        purity = maxSum / (double) total;
+        bCubedPrecision = precisionSum / total;
+        bCubedRecall = recallSum / total;
+
+        //Entropies, from sum(x log x) : H(X) = log N - sum(x log x) / N
+        double logTotal = Math.log(total);
+        double newEntropy = logTotal - rowsEntropy / total;
+        double realEntropy = logTotal - columnsEntropy / total;
+        double mutualInformation = (cellsEntropy + xLogX(total) - rowsEntropy - columnsEntropy) / total;
+        //Rounding errors must not give a small negative entropy for a single cluster
+        newEntropy = Math.max(newEntropy, 0);
+        realEntropy = Math.max(realEntropy, 0);
+        mutualInformation = Math.max(mutualInformation, 0);
+
+        if(newEntropy == 0 || realEntropy == 0)
+        {
+            normalizedMutualInformation = newEntropy == realEntropy ? 1 : 0;
+        }
+        else
+        {
+            normalizedMutualInformation = mutualInformation / Math.sqrt(newEntropy * realEntropy);
+        }
+        homogeneity = realEntropy == 0 ? 1 : mutualInformation / realEntropy;
+        completeness = newEntropy == 0 ? 1 : mutualInformation / newEntropy;
+        vMeasure = homogeneity + completeness == 0 ? 0 : 2 * homogeneity * completeness / (homogeneity + completeness);
+
+        //Adjusted Rand index, over the pairs of tweets
+        double expectedIndex = rowsPairs * columnsPairs / getPairsNumber(total);
+        double maxIndex = (rowsPairs + columnsPairs) / 2;
+        adjustedRandIndex = maxIndex == expectedIndex ? 1 : (cellsPairs - expectedIndex) / (maxIndex - expectedIndex);
+    }
+
+    /**
+     * @param n A number of tweets
+     * @return The number of pairs of tweets, n * (n - 1) / 2
+     */
+    private static double getPairsNumber(long n)
+    {
+        return n * (n - 1) / 2.0;
+    }
+
+    /**
+     * @param x A count
+     * @return x * log(x), 0 for x = 0
+     */
+    private static double xLogX(long x)
+    {
+        return x == 0 ? 0 : x * Math.log(x);
+    }
+
+    public double getFScore()
+    {
+        return fScore;
+    }
+
+    public int getNewClustersNumber()
+    {
+        return newClustersNumber;
+    }
+
+    public int getRealClustersNumber()
+    {
+        return realClustersNumber;
+    }
+
+    public long getTweetsNumber()
+    {
+        return tweetsNumber;
+    }
+
+    public double getPurity()
+    {
+        return purity;
+    }
+
+    public double getNormalizedMutualInformation()
+    {
+        return normalizedMutualInformation;
+    }
+
+    public double getAdjustedRandIndex()
+    {
+        return adjustedRandIndex;
+    }
+
+    public double getBCubedPrecision()
+    {
+        return bCubedPrecision;
+    }
+
+    public double getBCubedRecall()
+    {
+        return bCubedRecall;
+    }
+
+    /**
+     * @return The harmonic mean of the B-cubed precision and recall
+     */
+    public double getBCubedFScore()
+    {
+        return bCubedPrecision + bCubedRecall == 0 ? 0 : 2 * bCubedPrecision * bCubedRecall / (bCubedPrecision + bCubedRecall);
+    }
+
+    public double getHomogeneity()
+    {
+        return homogeneity;
+    }
+
+    public double getCompleteness()
+    {
+        return completeness;
+    }
+
+    public double getVMeasure()
+    {
+        return vMeasure;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("F-score : %f\nPurity : %f\nNMI : %f\nAdjusted Rand index : %f\nB-cubed precision : %f, recall : %f, F-score : %f\nHomogeneity : %f, completeness : %f, V-measure : %f\nClusters : %d (real : %d), tweets : %d",
+                fScore, purity, normalizedMutualInformation, adjustedRandIndex, bCubedPrecision, bCubedRecall, getBCubedFScore(),
+                homogeneity, completeness, vMeasure, newClustersNumber, realClustersNumber, tweetsNumber);
+    }
+}
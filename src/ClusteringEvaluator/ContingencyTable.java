@@ -0,0 +1,217 @@
+package ClusteringEvaluator;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+
+/**
+ * Contingency table between a real clustering and a new clustering : the cell (new cluster, real cluster)
+ * is the number of tweets of the real cluster which are also in the new cluster
+ * The table is filled in a single pass over the new clustering, using a map from each tweet ID to its real clusters,
+ * so that the cost is linear in the number of tweets instead of one intersection per pair of clusters.
+ * Only the non-zero cells are stored, row by row.
+ *
+ * A tweet listed twice in a real cluster is counted twice, a tweet listed twice in a new cluster is counted once,
+ * as with an intersection browsing the real cluster and looking the tweets up in the new one.
+ */
+public class ContingencyTable
+{
+    /** Real cluster ID of each column, in the iteration order of the real clustering */
+    private final int[] realClusterIds;
+    /** Number of tweets of each real cluster, duplicates included */
+    private final int[] realClusterSizes;
+    /** New cluster ID of each row, in the iteration order of the new clustering */
+    private final int[] newClusterIds;
+    /** Number of tweets of each new cluster, duplicates included */
+    private final int[] newClusterSizes;
+    /** For each row, the columns of the non-zero cells in ascending order */
+    private final int[][] cellColumns;
+    /** For each row, the count of the non-zero cells, aligned with cellColumns */
+    private final int[][] cellCounts;
+    /** Row of each new cluster ID */
+    private final HashMap<Integer, Integer> rows = new HashMap<Integer, Integer>();
+    /** Column of each real cluster ID */
+    private final HashMap<Integer, Integer> columns = new HashMap<Integer, Integer>();
+
+
+    /**
+     * Builds the contingency table of two clusterings
+     * @param realClustering The real clustering, with the tweets ID of each cluster in ascending order
+     * @param newClustering The new clustering, with the tweets ID of each cluster in ascending order
+     */
+    public ContingencyTable(HashMap<Integer, long[]> realClustering, HashMap<Integer, long[]> newClustering)
+    {
+        realClusterIds = new int[realClustering.size()];
+        realClusterSizes = new int[realClustering.size()];
+        newClusterIds = new int[newClustering.size()];
+        newClusterSizes = new int[newClustering.size()];
+        cellColumns = new int[newClustering.size()][];
+        cellCounts = new int[newClustering.size()][];
+
+        //Columns of each tweet : a tweet listed twice in a real cluster has this column twice
+        LongHashMap<int[]> tweetsColumns = new LongHashMap<int[]>();
+        int column = 0;
+        for(Integer realClusterId : realClustering.keySet())
+        {
+            long[] tweets = realClustering.get(realClusterId);
+            realClusterIds[column] = realClusterId;
+            realClusterSizes[column] = tweets.length;
+            columns.put(realClusterId, column);
+            for(long tweetId : tweets)
+            {
+                int[] tweetColumns = tweetsColumns.get(tweetId);
+                if(tweetColumns == null)
+                {
+                    tweetColumns = new int[] {column};
+                }
+                else
+                {
+                    tweetColumns = Arrays.copyOf(tweetColumns, tweetColumns.length + 1);
+                    tweetColumns[tweetColumns.length - 1] = column;
+                }
+                tweetsColumns.put(tweetId, tweetColumns);
+            }
+            ++column;
+        }
+
+        //Filling each row with a dense accumulator, only the touched columns being read and reset
+        int[] counts = new int[realClusterIds.length];
+        int[] touched = new int[realClusterIds.length];
+        int row = 0;
+        for(Integer newClusterId : newClustering.keySet())
+        {
+            long[] tweets = newClustering.get(newClusterId);
+            int touchedNumber = 0;
+            newClusterIds[row] = newClusterId;
+            newClusterSizes[row] = tweets.length;
+            rows.put(newClusterId, row);
+
+            for(int i = 0; i < tweets.length; ++i)
+            {
+                int[] tweetColumns = tweetsColumns.get(tweets[i]);
+                if(tweetColumns == null || (i > 0 && tweets[i] == tweets[i - 1]))
+                {
+                    continue;
+                }
+                for(int tweetColumn : tweetColumns)
+                {
+                    if(counts[tweetColumn]++ == 0)
+                    {
+                        touched[touchedNumber++] = tweetColumn;
+                    }
+                }
+            }
+
+            Arrays.sort(touched, 0, touchedNumber);
+            cellColumns[row] = Arrays.copyOf(touched, touchedNumber);
+            cellCounts[row] = new int[touchedNumber];
+            for(int i = 0; i < touchedNumber; ++i)
+            {
+                cellCounts[row][i] = counts[touched[i]];
+                counts[touched[i]] = 0;
+            }
+            ++row;
+        }
+    }
+
+    /**
+     * @return The number of rows (new clusters)
+     */
+    public int getRowsNumber()
+    {
+        return newClusterIds.length;
+    }
+
+    /**
+     * @return The number of columns (real clusters)
+     */
+    public int getColumnsNumber()
+    {
+        return realClusterIds.length;
+    }
+
+    /**
+     * @param newClusterId A new cluster ID
+     * @return The row of the new cluster, or -1 if it is not in the new clustering
+     */
+    public int getRow(int newClusterId)
+    {
+        Integer row = rows.get(newClusterId);
+        return row == null ? -1 : row;
+    }
+
+    /**
+     * @param realClusterId A real cluster ID
+     * @return The column of the real cluster, or -1 if it is not in the real clustering
+     */
+    public int getColumn(int realClusterId)
+    {
+        Integer column = columns.get(realClusterId);
+        return column == null ? -1 : column;
+    }
+
+    /**
+     * @param row A row
+     * @return The new cluster ID of the row
+     */
+    public int getNewClusterId(int row)
+    {
+        return newClusterIds[row];
+    }
+
+    /**
+     * @param column A column
+     * @return The real cluster ID of the column
+     */
+    public int getRealClusterId(int column)
+    {
+        return realClusterIds[column];
+    }
+
+    /**
+     * @param row A row
+     * @return The number of tweets of the new cluster
+     */
+    public int getNewClusterSize(int row)
+    {
+        return newClusterSizes[row];
+    }
+
+    /**
+     * @param column A column
+     * @return The number of tweets of the real cluster
+     */
+    public int getRealClusterSize(int column)
+    {
+        return realClusterSizes[column];
+    }
+
+    /**
+     * @param row A row
+     * @return The columns of the non-zero cells of the row, in ascending order (must not be modified)
+     */
+    public int[] getCellColumns(int row)
+    {
+        return cellColumns[row];
+    }
+
+    /**
+     * @param row A row
+     * @return The counts of the non-zero cells of the row, aligned with getCellColumns (must not be modified)
+     */
+    public int[] getCellCounts(int row)
+    {
+        return cellCounts[row];
+    }
+
+    /**
+     * @param row A row
+     * @param column A column
+     * @return The number of tweets of the real cluster which are also in the new cluster
+     */
+    public int getCount(int row, int column)
+    {
+        int i = Arrays.binarySearch(cellColumns[row], column);
+        return i < 0 ? 0 : cellCounts[row][i];
+    }
+}
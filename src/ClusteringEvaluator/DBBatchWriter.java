@@ -0,0 +1,206 @@
+package ClusteringEvaluator;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Batched writer on a database connection : the rows are bound to prepared
+ * statements, cached per table and column set, and sent by batches inside an
+ * explicit transaction. The values are bound, not concatenated, so that a
+ * quote in a tweet cannot break the query.
+ *
+ * The transaction starts with the writer and ends with commit, rollback or
+ * close. The waiting rows are executed statement by statement, so that rows
+ * depending on a row of another statement must be preceded by a flush.
+ * An instance is not thread safe.
+ */
+public class DBBatchWriter {
+
+    /**
+     * Default number of rows sent at once
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    private final Connection connection;
+    private final int batchSize;
+    private final boolean autoCommit;
+    /**
+     * Prepared statements by query, in creation order
+     */
+    private final LinkedHashMap<String, PreparedStatement> statements = new LinkedHashMap<String, PreparedStatement>();
+    /**
+     * Statements with rows waiting in their batch, in order of first use
+     */
+    private final List<PreparedStatement> pendingStatements = new ArrayList<PreparedStatement>();
+    private int pendingRows = 0;
+
+    /**
+     * Starts a transaction on the connection
+     *
+     * @param connection Connection to the database
+     * @param batchSize Number of rows after which the batches are executed
+     * @throws SQLException
+     */
+    public DBBatchWriter(Connection connection, int batchSize) throws SQLException {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Invalid batch size : " + batchSize);
+        }
+        this.connection = connection;
+        this.batchSize = batchSize;
+        this.autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+    }
+
+    /**
+     * Adds the insertion of a tuple to the batch
+     *
+     * @param table Table to insert into
+     * @param tuple Values to insert, by column
+     * @throws SQLException
+     */
+    public void insertInto(String table, TreeMap<String, Object> tuple) throws SQLException {
+        StringBuilder query = new StringBuilder();
+        query.append(DBManager.INSERT_INTO + " " + table + " (");
+        appendColumns(query, tuple, ", ", "");
+        query.append(") " + DBManager.VALUES + " (");
+        for (int i = 0; i < tuple.size(); i++) {
+            query.append(i == 0 ? "?" : ", ?");
+        }
+        query.append(")");
+
+        PreparedStatement statement = getStatement(query.toString());
+        DBManager.bindValues(statement, 1, tuple);
+        addBatch(statement);
+    }
+
+    /**
+     * Adds the update of the tuples matching a set of columns to the batch
+     *
+     * @param table Table to update
+     * @param tuple Values to update, by column
+     * @param where Values of the columns identifying the tuples to update
+     * @throws SQLException
+     */
+    public void update(String table, TreeMap<String, Object> tuple, TreeMap<String, Object> where) throws SQLException {
+        StringBuilder query = new StringBuilder();
+        query.append(DBManager.UPDATE + " " + table + " " + DBManager.SET + " ");
+        appendColumns(query, tuple, ", ", " = ?");
+        query.append(" " + DBManager.WHERE + " ");
+        appendColumns(query, where, " " + DBManager.AND + " ", " = ?");
+
+        PreparedStatement statement = getStatement(query.toString());
+        int index = DBManager.bindValues(statement, 1, tuple);
+        DBManager.bindValues(statement, index, where);
+        addBatch(statement);
+    }
+
+    /**
+     * Executes every waiting batch, without committing
+     *
+     * @throws SQLException
+     */
+    public void flush() throws SQLException {
+        for (PreparedStatement statement : pendingStatements) {
+            statement.executeBatch();
+        }
+        pendingStatements.clear();
+        pendingRows = 0;
+    }
+
+    /**
+     * Executes every waiting batch and commits the transaction, a new one
+     * starting with the next row
+     *
+     * @throws SQLException
+     */
+    public void commit() throws SQLException {
+        flush();
+        connection.commit();
+    }
+
+    /**
+     * Drops the waiting batches and rolls the transaction back
+     *
+     * @throws SQLException
+     */
+    public void rollback() throws SQLException {
+        for (PreparedStatement statement : pendingStatements) {
+            statement.clearBatch();
+        }
+        pendingStatements.clear();
+        pendingRows = 0;
+        connection.rollback();
+    }
+
+    /**
+     * Commits the transaction, closes the statements and restores the auto
+     * commit mode of the connection. If the commit fails, the transaction is
+     * rolled back first, since restoring the auto commit mode would commit
+     * the rows already executed
+     *
+     * @throws SQLException The commit failure
+     */
+    public void close() throws SQLException {
+        try {
+            commit();
+        } catch (SQLException ex) {
+            try {
+                rollback();
+            } catch (SQLException rollbackEx) {
+                Logger.getLogger(DBBatchWriter.class.getName()).log(Level.SEVERE, null, rollbackEx);
+            }
+            throw ex;
+        } finally {
+            for (PreparedStatement statement : statements.values()) {
+                statement.close();
+            }
+            statements.clear();
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * @return The number of rows waiting in the batches
+     */
+    public int getPendingRows() {
+        return pendingRows;
+    }
+
+    private PreparedStatement getStatement(String query) throws SQLException {
+        PreparedStatement statement = statements.get(query);
+        if (statement == null) {
+            statement = connection.prepareStatement(query);
+            statements.put(query, statement);
+        }
+        return statement;
+    }
+
+    private void addBatch(PreparedStatement statement) throws SQLException {
+        statement.addBatch();
+        if (!pendingStatements.contains(statement)) {
+            pendingStatements.add(statement);
+        }
+        if (++pendingRows >= batchSize) {
+            flush();
+        }
+    }
+
+    private static void appendColumns(StringBuilder query, TreeMap<String, Object> tuple, String separator, String suffix) {
+        int i = 0;
+        for (String key : tuple.keySet()) {
+            if (i > 0) {
+                query.append(separator);
+            }
+            query.append(key);
+            query.append(suffix);
+            i++;
+        }
+    }
+}
@@ -2,9 +2,11 @@ package ClusteringEvaluator;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Types;
 import java.util.TreeMap;
 
 public class DBManager {
@@ -204,35 +206,30 @@ public class DBManager {
 
         query.append(") ");
 
-        // Build values
+        // Build values, bound to the statement so that quotes need no escaping
         query.append(VALUES);
         query.append(" (");
 
-        i = 0;
-        for (String key : tuple.keySet()) {
-            if (tuple.get(key) instanceof String) {
-                query.append("'");
-                query.append(tuple.get(key));
-                query.append("'");
-            } else {
-                query.append(tuple.get(key));
-            }
+        for (i = 0; i < tuple.size(); i++) {
+            query.append("?");
             if (i < tuple.size() - 1) {
                 query.append(", ");
             }
-            i++;
         }
 
         query.append(" )");
 
-        Statement statement;
+        PreparedStatement statement = null;
         try {
-            statement = connection.createStatement();
-            statement.executeUpdate(query.toString());
+            statement = connection.prepareStatement(query.toString());
+            bindValues(statement, 1, tuple);
+            statement.executeUpdate();
             return true;
         } catch (SQLException e) {
             e.printStackTrace();
             return false;
+        } finally {
+            close(statement);
         }
     }
 
@@ -257,14 +254,7 @@ public class DBManager {
         int i = 0;
         for (String key : tuple.keySet()) {
             query.append(key);
-            query.append(" = ");
-            if (tuple.get(key) instanceof String) {
-                query.append("'");
-                query.append(tuple.get(key));
-                query.append("'");
-            } else {
-                query.append(tuple.get(key));
-            }
+            query.append(" = ?");
             if (i < tuple.size() - 1) {
                 query.append(", ");
             }
@@ -273,12 +263,70 @@ public class DBManager {
 
         query.append(" " + WHERE + " " + where);
 
-        Statement statement;
+        PreparedStatement statement = null;
         try {
-            statement = connection.createStatement();
-            statement.executeUpdate(query.toString());
+            statement = connection.prepareStatement(query.toString());
+            bindValues(statement, 1, tuple);
+            statement.executeUpdate();
         } catch (SQLException e) {
             e.printStackTrace();
+        } finally {
+            close(statement);
+        }
+    }
+
+    /**
+     * Closes a statement, if it has been created
+     *
+     * @param statement
+     *            The statement, or null
+     */
+    private static void close(Statement statement) {
+        if (statement != null) {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Binds the values of a tuple to the parameters of a statement, in column
+     * order
+     *
+     * @param statement
+     *            Prepared statement
+     * @param index
+     *            Index of the first parameter
+     * @param tuple
+     *            Values to bind
+     * @return The index of the next parameter
+     */
+    static int bindValues(PreparedStatement statement, int index,
+            TreeMap<String, Object> tuple) throws SQLException {
+        for (Object value : tuple.values()) {
+            if (value == null) {
+                statement.setNull(index, Types.NULL);
+            } else {
+                statement.setObject(index, value);
+            }
+            index++;
         }
+        return index;
+    }
+
+    /**
+     * Starts a batched writer on the database : cached prepared statements,
+     * batches and an explicit transaction (See DBBatchWriter)
+     *
+     * @param connection
+     *            Connection to the database
+     * @param batchSize
+     *            Number of rows sent at once
+     */
+    public static DBBatchWriter createBatchWriter(Connection connection,
+            int batchSize) throws SQLException {
+        return new DBBatchWriter(connection, batchSize);
     }
 }
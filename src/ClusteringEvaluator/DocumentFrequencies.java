@@ -0,0 +1,111 @@
+package ClusteringEvaluator;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Document frequency of each term, updated as the tweets stream in (See TermWeighting)
+ * The counts are stored in chunks of CHUNK_SIZE term IDs, so that new terms never move the existing counts :
+ * adding a tweet is a lock-free increment per term, and only the creation of a chunk for a new range
+ * of term IDs takes a lock. An instance is thread safe, and can be shared by concurrent clusterings.
+ */
+public class DocumentFrequencies
+{
+    /** Number of bits of the term IDs of a chunk */
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    /** Counts of each chunk of term IDs, null for a chunk without any term met yet */
+    private volatile AtomicIntegerArray[] chunks = new AtomicIntegerArray[16];
+    /** Number of tweets */
+    private final AtomicLong documentsNumber = new AtomicLong();
+    /** Sum of the tweets lengths, i.e. of their terms frequencies */
+    private final AtomicLong totalLength = new AtomicLong();
+
+
+    /**
+     * Adds a tweet : the document frequency of each one of its terms is incremented
+     * @param vector The terms frequency vector of the tweet
+     */
+    public void add(SparseVector vector)
+    {
+        int[] termIds = vector.getTermIds();
+        float[] counts = vector.getWeights();
+        long length = 0;
+        for(int i = 0; i < termIds.length; ++i)
+        {
+            getChunk(termIds[i] >>> CHUNK_BITS).incrementAndGet(termIds[i] & (CHUNK_SIZE - 1));
+            length += (long) counts[i];
+        }
+        totalLength.addAndGet(length);
+        documentsNumber.incrementAndGet();
+    }
+
+    /**
+     * @param termId A term ID
+     * @return The number of tweets containing the term
+     */
+    public int getDocumentFrequency(int termId)
+    {
+        AtomicIntegerArray[] currentChunks = chunks;
+        int chunkIndex = termId >>> CHUNK_BITS;
+        if(chunkIndex >= currentChunks.length || currentChunks[chunkIndex] == null)
+        {
+            return 0;
+        }
+        return currentChunks[chunkIndex].get(termId & (CHUNK_SIZE - 1));
+    }
+
+    /**
+     * @return The number of tweets
+     */
+    public long getDocumentsNumber()
+    {
+        return documentsNumber.get();
+    }
+
+    /**
+     * @return The average number of terms of a tweet, duplicates included, 0 if there is none
+     */
+    public double getAverageDocumentLength()
+    {
+        long documents = documentsNumber.get();
+        return documents == 0 ? 0 : totalLength.get() / (double) documents;
+    }
+
+    /**
+     * Returns the counts of a chunk of term IDs, created if it does not exist yet
+     * @param chunkIndex The chunk index : the term ID without its CHUNK_BITS low bits
+     * @return The counts of the chunk
+     */
+    private AtomicIntegerArray getChunk(int chunkIndex)
+    {
+        AtomicIntegerArray[] currentChunks = chunks;
+        if(chunkIndex < currentChunks.length && currentChunks[chunkIndex] != null)
+        {
+            return currentChunks[chunkIndex];
+        }
+        synchronized(this)
+        {
+            //The chunks array is replaced rather than modified, so that a reader always sees a complete one
+            currentChunks = chunks;
+            if(chunkIndex >= currentChunks.length)
+            {
+                currentChunks = Arrays.copyOf(currentChunks, Math.max(chunkIndex + 1, currentChunks.length * 2));
+            }
+            else if(currentChunks[chunkIndex] != null)
+            {
+                return currentChunks[chunkIndex];
+            }
+            else
+            {
+                currentChunks = currentChunks.clone();
+            }
+            currentChunks[chunkIndex] = new AtomicIntegerArray(CHUNK_SIZE);
+            chunks = currentChunks;
+            return currentChunks[chunkIndex];
+        }
+    }
+}
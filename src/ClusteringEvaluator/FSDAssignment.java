@@ -0,0 +1,59 @@
+package ClusteringEvaluator;
+
+
+/**
+ * Result of the first story detection of a single tweet : either the tweet joins an existing cluster,
+ * or it is a new story and becomes the seed of a new cluster
+ */
+public class FSDAssignment
+{
+    /** Tweet ID */
+    private final long tweetId;
+    /** Cluster ID of the tweet */
+    private final int clusterId;
+    /** True if the tweet is the seed of a new cluster */
+    private final boolean newStory;
+    /** Tweet timestamp, in milliseconds */
+    private final long timestamp;
+
+
+    /**
+     * @param tweetId The tweet ID
+     * @param clusterId The cluster ID of the tweet
+     * @param newStory True if the tweet is the seed of a new cluster
+     * @param timestamp The tweet timestamp, in milliseconds
+     */
+    public FSDAssignment(long tweetId, int clusterId, boolean newStory, long timestamp)
+    {
+        this.tweetId = tweetId;
+        this.clusterId = clusterId;
+        this.newStory = newStory;
+        this.timestamp = timestamp;
+    }
+
+    public long getTweetId()
+    {
+        return tweetId;
+    }
+
+    public int getClusterId()
+    {
+        return clusterId;
+    }
+
+    public boolean isNewStory()
+    {
+        return newStory;
+    }
+
+    public long getTimestamp()
+    {
+        return timestamp;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%d %d%s", tweetId, clusterId, newStory ? " new story" : "");
+    }
+}
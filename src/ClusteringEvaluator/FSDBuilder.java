@@ -1,12 +1,10 @@
 package ClusteringEvaluator;
 
-import java.io.FileWriter;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.sql.SQLException;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 
 /**
@@ -17,271 +15,315 @@ public class FSDBuilder
 {
     /** Cosine similarity threshold from which a vector is accepted in a cluster */
     private static final double COSINE_SIMILARITY_ACCEPTANCE = 0.1;
+    /** Weighting of the terms frequencies, the acceptance threshold having been tuned for the raw frequencies (See TermWeighting) */
+    private static final TermWeighting TERM_WEIGHTING = TermWeighting.RAW;
     
-    /** Results file paths */
+    /** Results file paths of the streaming first story detection */
     private static final String FSD_SEEDS_FILE_PATH = "results\\fsdSeeds";
     public static final String FSD_CLUSTERING_FILE_PATH = "results\\fsdClustering";
     
+    /** Results database of the batch first story detection (See FSDResultStore) */
+    public static final String FSD_RESULTS_DATABASE = "jdbc:sqlite:results\\fsdResults.db";
     
     /**
-     * Process a first story detection algorithm in order to clusters the given tweets, then exports it
-     * @param uniqueTerms A set (unique elements) of every term found in the tweets
-     * @param freqMatrix For each tweet, a terms vector. This terms vector contains, for each term, the number of times it appears in the tweet
+     * Approximate nearest seed search parameters (See LSHSeedIndex)
+     * The acceptance threshold is low, so that few bits per table are needed to keep similar tweets in the same buckets
+     */
+    private static final int LSH_TABLES_NUMBER = 32;
+    private static final int LSH_BITS_NUMBER = 4;
+    private static final int LSH_BUCKET_SIZE = 64;
+    private static final long LSH_RANDOM_SEED = 42;
+    
+    /** Default sliding window of the streaming first story detection : one day, in milliseconds */
+    public static final long STREAMING_WINDOW_DURATION = 24 * 3600 * 1000L;
+    
+    
+    /**
+     * Process a first story detection algorithm in order to clusters the given tweets, then saves it as a new run
+     * @param dictionary The dictionary of every term found in the tweets
+     * @param freqMatrix For each tweet, a sparse terms vector. This terms vector contains, for each term ID, the number of times it appears in the tweet
+     * @param store The results database in which the clustering is saved (See FSDResultStore), null to keep it in memory only
+     * @return An FSD clustering map :
+     *                  Key = clusterId
+     *                  Value = tweets ID array, in ascending order
      * @throws IOException 
      */
-    public static void runFSDClustering(HashSet<String> uniqueTerms, HashMap<String, HashMap<String, Long>> freqMatrix) throws IOException
+    public static HashMap<Integer, long[]> runFSDClustering(TermDictionary dictionary, LongHashMap<SparseVector> freqMatrix, FSDResultStore store) throws IOException
     {
-        HashMap<Integer, String> clusterSeeds = new HashMap<Integer, String>();
-        HashMap<Integer, List<String>> fsdClustering = new HashMap<Integer, List<String>>();
+        HashMap<Integer, LongList> fsdClustering = new HashMap<Integer, LongList>();
         
-        getFSDClustering(uniqueTerms, freqMatrix, fsdClustering, clusterSeeds);
-        exportFSDClustering(fsdClustering);
-        exportFSDSeeds(clusterSeeds);
+        getFSDClustering(dictionary, freqMatrix, fsdClustering, createSeedIndex(false), COSINE_SIMILARITY_ACCEPTANCE, TERM_WEIGHTING);
+        if(store != null)
+        {
+            try
+            {
+                store.saveRun("fsd", COSINE_SIMILARITY_ACCEPTANCE, TERM_WEIGHTING, fsdClustering, freqMatrix);
+            }
+            catch(SQLException ex)
+            {
+                Logger.getLogger(FSDBuilder.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+        return getSortedClustering(fsdClustering);
     }
-   
     
     /**
-     * Returns an FSD clustering using the cosine distance similarity between two terms vectors
-     * Algorithm :
-     * for each tweet terms vector
-     *      for each cluster seed
-     *          if the cosine similarity between the current tweet and the seed is superior or equal to 0.1
-     *              Adding the tweet to the current cluster
-     *              break
-     *          end if
-     *       end for
-     *       if the tweet has not be added to any cluster
-     *          Creating a new cluster with the current tweet as seed
-     *       end if
-     * end for
-     * @param uniqueTerms A set of every unique terms contained by the tweets
-     * @param freqMatrix A frequency matrix (See getTermsFrequencyMatrix)
-     * @param fsdClustering An FSD clustering map :
-     *                              Key = clusterId
-     *                              Value = tweets ID list
-     * @param clusterSeeds The map of each seed linked with its respective cluster :
-     *                              Key = clusterId
-     *                              Value = tweets ID seed
+     * Process a streaming first story detection on the tweets of the database, in chronological order
+     * The seeds older than the window are evicted, and their clusters are written as soon as they are finished,
+     * in the text files FSD_CLUSTERING_FILE_PATH and FSD_SEEDS_FILE_PATH
+     * @param approximate True to search the seeds with locality-sensitive hashing, false for an exact search
+     * @param windowDuration The duration (milliseconds) after which a seed is evicted (See STREAMING_WINDOW_DURATION)
+     * @throws IOException 
      */
-    private static void getFSDClustering(HashSet<String> uniqueTerms, HashMap<String, HashMap<String, Long>> freqMatrix, HashMap<Integer, List<String>> fsdClustering, HashMap<Integer, String> clusterSeeds)
+    public static void runStreamingFSDClustering(boolean approximate, long windowDuration) throws IOException
     {
-        System.out.println("Building FSD clustering...");
-        
-        Integer currentClusterId = 1;
-        Set<String> keySet = freqMatrix.keySet();
-        int tweetsNumber = keySet.size();
+        System.out.println("Building streaming FSD clustering...");
+        long startTime = System.nanoTime();
+        FileClusterSink sink = new FileClusterSink(FSD_CLUSTERING_FILE_PATH, FSD_SEEDS_FILE_PATH);
         
-        //Browsing each tweet ID
-        for(String tweetId : keySet)
+        try
         {
-            HashMap<String, Long> termsVector = freqMatrix.get(tweetId);
+            StreamingFSD streamingFSD = new StreamingFSD(new TermDictionary(), createSeedIndex(approximate), COSINE_SIMILARITY_ACCEPTANCE,
+                    TERM_WEIGHTING, new DocumentFrequencies(), windowDuration, 0, sink);
             
-            //If the clusters list is empty
-            if(fsdClustering.isEmpty())
+            //The tweets are fed in chronological order
+            TweetReader reader = new TweetReader(FrequencyMatrixBuilder.TWEETS_DATABASE, true, true);
+            try
             {
-                //Creating a new cluster with the current tweet ID as seed
-                addCluster(fsdClustering, tweetId, termsVector, clusterSeeds, currentClusterId);
-                currentClusterId += 1;
-            }
-            else
-            {
-                boolean clustered = false;
-                //Browsing the clusters ID
-                for(Integer clusterId : clusterSeeds.keySet())
+                while(reader.hasNext())
                 {
-                    //Getting the cluster seed
-                    String seed = clusterSeeds.get(clusterId);
-                    HashMap<String, Long> seedTermsVector = freqMatrix.get(seed);
-                    Long[] frequencyVector = getFrequencyVector(uniqueTerms, termsVector);
-                    Long[] seedFrequencyVector = getFrequencyVector(uniqueTerms, seedTermsVector);
-                    
-                    //Calculating the cosine similarity between the current tweet terms vector and the current cluster seed terms vector
-                    if(getCosineSimilarity(frequencyVector, seedFrequencyVector) >= COSINE_SIMILARITY_ACCEPTANCE)
-                    {
-                        fsdClustering.get(clusterId).add(tweetId);
-                        clustered = true;
-                        break;
-                    }
-                }
-                
-                //If the tweet has not be added to any cluster
-                if(!clustered)
-                {
-                    //Creating a new cluster with the current tweet ID as seed
-                    addCluster(fsdClustering, tweetId, termsVector, clusterSeeds, currentClusterId);
-                    currentClusterId += 1;
+                    Tweet tweet = reader.next();
+                    streamingFSD.process(tweet.getId(), tweet.getText(), tweet.getTimestamp());
                 }
             }
-            
-            //Displaying progression
-            if(tweetsNumber % 100 == 0)
+            finally
             {
-                System.out.println(tweetsNumber + " tweets processed");
+                reader.close();
             }
+            
+            //The clusters still active are only written once every tweet has been read
+            streamingFSD.flush();
+            Metrics.get().addStageTime("fsd", startTime);
+            System.out.println(String.format("Done : %d clusters", streamingFSD.getClustersNumber()));
+        }
+        catch(ClassNotFoundException ex)
+        {
+            Logger.getLogger(FSDBuilder.class.getName()).log(Level.SEVERE, null, ex);
+        }
+        catch(SQLException ex)
+        {
+            Logger.getLogger(FSDBuilder.class.getName()).log(Level.SEVERE, null, ex);
+        }
+        finally
+        {
+            sink.close();
         }
-        
-        System.out.println("Done");
     }
     
     /**
-     * Returns a complete frequency vector with each term linked with its occurrence number in a specified tweet
-     * @param uniqueTerms A set of every unique terms contained by the tweets 
-     * @param termsVector A set of every terms present in a tweet linked with their occurrence number (1 or more)
-     * @return A set of every terms present or not in a tweet linked with their occurrence number (0 or more)
-     *          Each term in the uniqueTerms set is now present in the new terms vector
+     * Process a streaming first story detection on the tweets of the database, in chronological order,
+     * reading, tokenizing, vectorizing, clustering and exporting the tweets concurrently (See FSDPipeline)
+     * The results are written in the same text files as runStreamingFSDClustering
+     * @param approximate True to search the seeds with locality-sensitive hashing, false for an exact search
+     * @throws IOException 
      */
-    public static Long[] getFrequencyVector(HashSet<String> uniqueTerms, HashMap<String, Long> termsVector)
+    public static void runPipelinedFSDClustering(boolean approximate) throws IOException
     {
-        Long[] frequencyVector = new Long[uniqueTerms.size()];
-        int i = 0;
-        Long frequency;
-        for(String key : uniqueTerms)
-        {
-            frequency = termsVector.get(key);
-            if(frequency == null)
-            {
-                frequencyVector[i] = new Long(0);
-            }
-            else
-            {
-                frequencyVector[i] = frequency;
-            }
-            ++i;
-        }
-        return frequencyVector;
+        long startTime = System.nanoTime();
+        new FSDPipeline(FrequencyMatrixBuilder.TWEETS_DATABASE, createStreamingFSD(approximate), FSD_CLUSTERING_FILE_PATH, FSD_SEEDS_FILE_PATH).run();
+        Metrics.get().addStageTime("fsd", startTime);
     }
     
     /**
-     * Add a tweet ID to the FSD clustering and register this one as a seed of the new cluster
-     * @param fsdClustering An FSD clustering map :
-     *                              Key = clusterId
-     *                              Value = tweets ID list
-     * @param tweetId The tweet ID to add
-     * @param termsVector A set of every unique terms contained by the tweets
-     * @param clusterSeeds The map of each seed linked with its respective cluster :
-     *                              Key = clusterId
-     *                              Value = tweets ID seed
-     * @param clusterId The new cluster ID
+     * Process a first story detection algorithm in order to clusters the given tweets, without exporting it
+     * @param dictionary The dictionary of every term found in the tweets
+     * @param freqMatrix For each tweet, a sparse terms vector (See runFSDClustering)
+     * @param approximate True to search the seeds with locality-sensitive hashing, false for an exact search
+     * @return An FSD clustering map :
+     *                  Key = clusterId
+     *                  Value = tweets ID array, in ascending order
+     * @throws IOException 
      */
-    private static void addCluster(HashMap<Integer, List<String>> fsdClustering, String tweetId, HashMap<String, Long> termsVector, HashMap<Integer, String> clusterSeeds, Integer clusterId)
+    public static HashMap<Integer, long[]> getFSDClustering(TermDictionary dictionary, LongHashMap<SparseVector> freqMatrix, boolean approximate) throws IOException
     {
-        List<String> cluster = new ArrayList<String>();
-        cluster.add(tweetId);
-        fsdClustering.put(clusterId, cluster);
-        clusterSeeds.put(clusterId, tweetId);
+        return getFSDClustering(dictionary, freqMatrix, approximate, COSINE_SIMILARITY_ACCEPTANCE);
     }
     
     /**
-     * Returns the cosine similarity between two vectors
-     * A = (xa, ya), B = (xb, yb)
-     * @param vector1 The first vector
-     * @param vector2 The second vector
-     * @return cosine(A, B) = A . B / ( ||A|| * ||B|| )
-     *                = (xa * xb + ya * yb) / ( sqrt(xa * xa + ya * ya) * sqrt(xb * xb + yb * yb) )
-     * 
-     * Example :
-     * A = (1, 0.5), B = (0.5, 1)
-     * cosine(A, B) = (0.5 + 0.5) / sqrt(5/4) sqrt(5/4)
-     *        = 4/5
-     * Note : we are here working with longs, not float. The example above cannot work here.
-     *          Thus, it explains how this function works.
+     * Process a first story detection algorithm with a given acceptance threshold, without exporting it
+     * The tweets vectors are only read, so that several clusterings of the same frequency matrix can run concurrently
+     * @param dictionary The dictionary of every term found in the tweets
+     * @param freqMatrix For each tweet, a sparse terms vector (See runFSDClustering)
+     * @param approximate True to search the seeds with locality-sensitive hashing, false for an exact search
+     * @param threshold The cosine similarity threshold from which a tweet is accepted in a cluster (See COSINE_SIMILARITY_ACCEPTANCE)
+     * @return An FSD clustering map :
+     *                  Key = clusterId
+     *                  Value = tweets ID array, in ascending order
+     * @throws IOException 
      */
-    public static double getCosineSimilarity(Long[] vector1, Long[] vector2)
+    public static HashMap<Integer, long[]> getFSDClustering(TermDictionary dictionary, LongHashMap<SparseVector> freqMatrix, boolean approximate, double threshold) throws IOException
     {
-        double crossProduct = getCrossProduct(vector1, vector2);
-        double norm1 = getVectorNorm(vector1);
-        double norm2 = getVectorNorm(vector2);
-        return crossProduct / (norm1 * norm2);
+        return getFSDClustering(dictionary, freqMatrix, approximate, threshold, TERM_WEIGHTING);
     }
     
     /**
-     * Returns the cross product of two vectors
-     * A = (xa, ya), B = (xb, yb)
-     * @param vector1 The first vector
-     * @param vector2 The second vector
-     * @return crossProduct(A, B) = A . B
-     *                      = (xa * xb + ya * yb)
+     * Process a first story detection algorithm with a given acceptance threshold and terms weighting, without exporting it
+     * The document frequencies are those of the tweets met so far, in the insertion order of the frequency matrix
+     * @param dictionary The dictionary of every term found in the tweets
+     * @param freqMatrix For each tweet, a sparse terms vector (See runFSDClustering)
+     * @param approximate True to search the seeds with locality-sensitive hashing, false for an exact search
+     * @param threshold The cosine similarity threshold from which a tweet is accepted in a cluster (See COSINE_SIMILARITY_ACCEPTANCE)
+     * @param weighting The weighting of the terms frequencies (See TermWeighting)
+     * @return An FSD clustering map :
+     *                  Key = clusterId
+     *                  Value = tweets ID array, in ascending order
+     * @throws IOException 
      */
-    private static double getCrossProduct(Long[] vector1, Long[] vector2)
+    public static HashMap<Integer, long[]> getFSDClustering(TermDictionary dictionary, LongHashMap<SparseVector> freqMatrix, boolean approximate, double threshold, TermWeighting weighting) throws IOException
     {
-        double crossProduct = 0;
-        for(int i = 0; i < vector1.length; ++i)
-        {
-            crossProduct += vector1[i] * vector2[i];
-        }
-        return crossProduct;
+        HashMap<Integer, LongList> fsdClustering = new HashMap<Integer, LongList>();
+        
+        getFSDClustering(dictionary, freqMatrix, fsdClustering, createSeedIndex(approximate), threshold, weighting);
+        return getSortedClustering(fsdClustering);
     }
     
     /**
-     * Returns the norm of the given vector
-     * A = (xa, ya)
-     * @param vector the vector to calculate the norm
-     * @return norm(A) = ||A||
-     *                 = sqrt(xa * xa + ya * ya)
+     * Returns a clustering whose tweets ID are sorted, so that the members of two clusters can be merged
+     * @param fsdClustering An FSD clustering map :
+     *                              Key = clusterId
+     *                              Value = tweets ID list, in arrival order
+     * @return An FSD clustering map :
+     *                  Key = clusterId
+     *                  Value = tweets ID array, in ascending order
      */
-    private static double getVectorNorm(Long[] vector)
+    private static HashMap<Integer, long[]> getSortedClustering(HashMap<Integer, LongList> fsdClustering)
     {
-        double norm = 0;
-        Long value;
-        for(int i = 0; i < vector.length; ++i)
+        HashMap<Integer, long[]> sortedClustering = new HashMap<Integer, long[]>();
+        for(Integer clusterId : fsdClustering.keySet())
         {
-            value = vector[i];
-            norm += value * value;
+            sortedClustering.put(clusterId, fsdClustering.get(clusterId).toSortedArray());
         }
-        return Math.sqrt(norm);
+        return sortedClustering;
     }
     
-   
     /**
-     * Export the FSD cluster seeds in a text file
-     * @param clusterSeeds The map of each seed linked with its respective cluster :
-     *                              Key = clusterId
-     *                              Value = tweets ID seed
-     * @throws IOException 
+     * Returns an incremental first story detection, processing the tweets one at a time
+     * @param approximate True to search the seeds with locality-sensitive hashing, false for an exact search
+     * @return The streaming first story detection, with no term and no cluster yet
      */
-    private static void exportFSDSeeds(HashMap<Integer, String> clusterSeeds) throws IOException
+    public static StreamingFSD createStreamingFSD(boolean approximate)
     {
-        System.out.println("Exporting FSD seeds...");
-        FileWriter writer = new FileWriter(FSD_SEEDS_FILE_PATH);
-        
-        for(Integer key : clusterSeeds.keySet())
+        return new StreamingFSD(new TermDictionary(), createSeedIndex(approximate), COSINE_SIMILARITY_ACCEPTANCE, TERM_WEIGHTING, new DocumentFrequencies());
+    }
+    
+    /**
+     * Returns an empty seeds search structure
+     * @param approximate True for a locality-sensitive hashing index (LSHSeedIndex),
+     *                    false for an exact inverted index (SeedStore)
+     * @return The seeds search structure
+     */
+    public static SeedIndex createSeedIndex(boolean approximate)
+    {
+        if(approximate)
         {
-            writer.append(key.toString());
-            writer.append(" ");
-            writer.append(clusterSeeds.get(key));
-            writer.append("\n");
+            return new LSHSeedIndex(LSH_TABLES_NUMBER, LSH_BITS_NUMBER, LSH_BUCKET_SIZE, LSH_RANDOM_SEED);
         }
-        
-        writer.flush();
-        writer.close();
-        System.out.println("Done");
+        return new SeedStore();
     }
+   
     
     /**
-     * Export the FSD clustering in a text file
+     * Returns an FSD clustering using the cosine distance similarity between two terms vectors
+     * Algorithm :
+     * for each tweet terms vector
+     *      for each cluster seed
+     *          if the cosine similarity between the current tweet and the seed is superior or equal to the threshold (0.1 by default)
+     *              Adding the tweet to the current cluster
+     *              break
+     *          end if
+     *       end for
+     *       if the tweet has not be added to any cluster
+     *          Creating a new cluster with the current tweet as seed
+     *       end if
+     * end for
+     * Note : only the seeds returned by the seeds search structure are compared (See SeedStore and LSHSeedIndex)
+     * The tweets are browsed in the insertion order of the frequency matrix
+     * @param dictionary The dictionary of every term contained by the tweets
+     * @param freqMatrix A frequency matrix (See getTermsFrequencyMatrix)
      * @param fsdClustering An FSD clustering map :
      *                              Key = clusterId
-     *                              Value = tweets ID list
+     *                              Value = tweets ID list, in arrival order : the first tweet is the cluster seed
+     * @param seedIndex The empty seeds search structure to use
+     * @param threshold The cosine similarity threshold from which a tweet is accepted in a cluster
+     * @param weighting The weighting of the terms frequencies
      * @throws IOException 
      */
-    private static void exportFSDClustering(HashMap<Integer, List<String>> fsdClustering) throws IOException
+    private static void getFSDClustering(TermDictionary dictionary, LongHashMap<SparseVector> freqMatrix, HashMap<Integer, LongList> fsdClustering, SeedIndex seedIndex,
+            double threshold, TermWeighting weighting) throws IOException
     {
-        System.out.println("Exporting FSD clustering...");
-        FileWriter writer = new FileWriter(FSD_CLUSTERING_FILE_PATH);
+        System.out.println("Building FSD clustering...");
+        long startTime = System.nanoTime();
+        
+        StreamingFSD streamingFSD = new StreamingFSD(dictionary, seedIndex, threshold, weighting, new DocumentFrequencies());
+        int tweetsNumber = freqMatrix.size();
         
-        for(Integer key : fsdClustering.keySet())
+        //Browsing each tweet ID
+        for(int position = 0; position < tweetsNumber; ++position)
         {
-            for(String tweetId : fsdClustering.get(key))
+            long tweetId = freqMatrix.getKey(position);
+            
+            //Getting the first cluster whose seed cosine similarity with the current tweet is high enough
+            FSDAssignment assignment = streamingFSD.process(tweetId, freqMatrix.getValue(position), 0);
+            if(!assignment.isNewStory())
             {
-                writer.append(key.toString());
-                writer.append(" ");
-                writer.append(tweetId);
-                writer.append("\n");
+                fsdClustering.get(assignment.getClusterId()).add(tweetId);
+            }
+            //If the tweet has not be added to any cluster
+            else
+            {
+                //Creating a new cluster with the current tweet ID as seed
+                addCluster(fsdClustering, tweetId, assignment.getClusterId());
             }
         }
         
-        writer.flush();
-        writer.close();
+        //The tweets, comparisons and seeds are counted by the streaming FSD (See Metrics)
+        streamingFSD.publishMetrics();
+        Metrics.get().addStageTime("fsd", startTime);
         System.out.println("Done");
     }
+    
+    /**
+     * Add a tweet ID to the FSD clustering as the seed of a new cluster
+     * @param fsdClustering An FSD clustering map :
+     *                              Key = clusterId
+     *                              Value = tweets ID list, in arrival order
+     * @param tweetId The tweet ID to add
+     * @param clusterId The new cluster ID
+     */
+    private static void addCluster(HashMap<Integer, LongList> fsdClustering, long tweetId, Integer clusterId)
+    {
+        LongList cluster = new LongList();
+        cluster.add(tweetId);
+        fsdClustering.put(clusterId, cluster);
+    }
+    
+    /**
+     * Returns the cosine similarity between two vectors
+     * A = (xa, ya), B = (xb, yb)
+     * @param vector1 The first vector
+     * @param vector2 The second vector
+     * @return cosine(A, B) = A . B / ( ||A|| * ||B|| )
+     *                = (xa * xb + ya * yb) / ( sqrt(xa * xa + ya * ya) * sqrt(xb * xb + yb * yb) )
+     * 
+     * Example :
+     * A = (1, 0.5), B = (0.5, 1)
+     * cosine(A, B) = (0.5 + 0.5) / sqrt(5/4) sqrt(5/4)
+     *        = 4/5
+     * Note : only the non-zero terms are stored in a sparse vector, and the norms are precalculated,
+     *          so that the cost is a dot product over the terms of both vectors
+     */
+    public static double getCosineSimilarity(SparseVector vector1, SparseVector vector2)
+    {
+        return vector1.getCosineSimilarity(vector2);
+    }
 }
@@ -0,0 +1,395 @@
+package ClusteringEvaluator;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.util.Version;
+
+
+/**
+ * First story detection pipeline : each stage runs in its own thread, and the stages are linked by bounded queues
+ * database reader -> tokenizer -> vectorizer -> FSD clusterer -> results writer
+ * A full queue blocks the stage feeding it, so that the memory stays bounded and the wall time
+ * is close to the time of the slowest stage instead of the sum of every stage time.
+ * If a stage fails, every other stage stops and the failure is thrown by run.
+ * Each stage owns its state : the vectorizer stage its TweetVectorizer, the clusterer stage the StreamingFSD,
+ * which only receives vectors.
+ */
+public class FSDPipeline
+{
+    /** Capacity of each queue between two stages */
+    private static final int QUEUE_CAPACITY = 1024;
+    /** Time after which a blocked stage checks whether the pipeline failed, in milliseconds */
+    private static final long POLL_TIMEOUT = 100;
+    /** Marker of the end of the stream */
+    private static final PipelineTweet END = new PipelineTweet(0, null, 0);
+
+    /** Database path (See FrequencyMatrixBuilder.TWEETS_DATABASE) */
+    private final String databasePath;
+    /** Clustering file path */
+    private final String clusteringFilePath;
+    /** Seeds file path */
+    private final String seedsFilePath;
+    /** First story detection, only used by the clusterer stage */
+    private final StreamingFSD streamingFSD;
+    /** Terms dictionary and vectorization buffer, only used by the vectorizer stage */
+    private final TweetVectorizer vectorizer = new TweetVectorizer(new TermDictionary());
+    /** Analyzer of the tokenizer stage */
+    private final Analyzer analyzer = new StandardAnalyzer(Version.LUCENE_44);
+
+    /** Queues between the stages */
+    private final BlockingQueue<PipelineTweet> rawTweets = new ArrayBlockingQueue<PipelineTweet>(QUEUE_CAPACITY);
+    private final BlockingQueue<PipelineTweet> tokenizedTweets = new ArrayBlockingQueue<PipelineTweet>(QUEUE_CAPACITY);
+    private final BlockingQueue<PipelineTweet> vectorizedTweets = new ArrayBlockingQueue<PipelineTweet>(QUEUE_CAPACITY);
+    private final BlockingQueue<PipelineTweet> clusteredTweets = new ArrayBlockingQueue<PipelineTweet>(QUEUE_CAPACITY);
+
+    /** First failure of a stage */
+    private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+
+    /**
+     * @param databasePath The tweets database path
+     * @param streamingFSD The first story detection to feed with the tweets vectors
+     * @param clusteringFilePath The clustering file path, one "clusterId tweetId" line per tweet
+     * @param seedsFilePath The seeds file path, one "clusterId tweetId" line per seed
+     */
+    public FSDPipeline(String databasePath, StreamingFSD streamingFSD, String clusteringFilePath, String seedsFilePath)
+    {
+        this.databasePath = databasePath;
+        this.streamingFSD = streamingFSD;
+        this.clusteringFilePath = clusteringFilePath;
+        this.seedsFilePath = seedsFilePath;
+    }
+
+    /**
+     * Runs every stage until the whole database is clustered, then displays the busy time of each stage
+     * @throws IOException If a stage failed
+     */
+    public void run() throws IOException
+    {
+        System.out.println("Running FSD pipeline...");
+        long wallTime = System.nanoTime();
+
+        List<Stage> stages = new ArrayList<Stage>();
+        stages.add(new ReaderStage());
+        stages.add(new TokenizerStage());
+        stages.add(new VectorizerStage());
+        stages.add(new ClustererStage());
+        stages.add(new WriterStage());
+        for(Stage stage : stages)
+        {
+            stage.start();
+        }
+
+        try
+        {
+            for(Stage stage : stages)
+            {
+                stage.join();
+            }
+        }
+        catch(InterruptedException ex)
+        {
+            failure.compareAndSet(null, ex);
+            Thread.currentThread().interrupt();
+        }
+
+        if(failure.get() != null)
+        {
+            throw new IOException("FSD pipeline failed", failure.get());
+        }
+
+        wallTime = System.nanoTime() - wallTime;
+        StringBuilder report = new StringBuilder("Stage\tBusy time (ms)\n");
+        for(Stage stage : stages)
+        {
+            report.append(String.format("%s\t%d\n", stage.getName(), stage.busyTime / 1000000));
+        }
+        report.append(String.format("Wall time : %d ms, %d clusters\n", wallTime / 1000000, streamingFSD.getClustersNumber()));
+        System.out.print(report);
+    }
+
+    /**
+     * Puts an element in a queue, waiting while the queue is full
+     * @param queue The queue
+     * @param tweet The element
+     * @throws InterruptedException
+     */
+    private void put(BlockingQueue<PipelineTweet> queue, PipelineTweet tweet) throws InterruptedException
+    {
+        while(!queue.offer(tweet, POLL_TIMEOUT, TimeUnit.MILLISECONDS))
+        {
+            checkFailure();
+        }
+    }
+
+    /**
+     * Takes an element from a queue, waiting while the queue is empty
+     * @param queue The queue
+     * @return The element
+     * @throws InterruptedException
+     */
+    private PipelineTweet take(BlockingQueue<PipelineTweet> queue) throws InterruptedException
+    {
+        PipelineTweet tweet;
+        while((tweet = queue.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS)) == null)
+        {
+            checkFailure();
+        }
+        return tweet;
+    }
+
+    /**
+     * Stops the calling stage if another stage failed
+     */
+    private void checkFailure()
+    {
+        if(failure.get() != null)
+        {
+            throw new IllegalStateException("Another stage of the pipeline failed");
+        }
+    }
+
+
+    /**
+     * Tweet going through the pipeline, each stage filling the data needed by the next one
+     */
+    private static class PipelineTweet
+    {
+        private final long id;
+        private String text;
+        private final long timestamp;
+        private List<String> tokens;
+        private SparseVector vector;
+        private FSDAssignment assignment;
+
+        private PipelineTweet(long id, String text, long timestamp)
+        {
+            this.id = id;
+            this.text = text;
+            this.timestamp = timestamp;
+        }
+    }
+
+    /**
+     * Thread running a stage, measuring the time spent out of the queues
+     */
+    private abstract class Stage extends Thread
+    {
+        /** Time spent processing, in nanoseconds */
+        private long busyTime = 0;
+
+        private Stage(String name)
+        {
+            super(name);
+            setDaemon(true);
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                runStage();
+            }
+            catch(Throwable ex)
+            {
+                failure.compareAndSet(null, ex);
+            }
+        }
+
+        /**
+         * Processes the tweets until the end of the stream
+         * @throws Exception
+         */
+        protected abstract void runStage() throws Exception;
+
+        /**
+         * Processes the tweets of the input queue and forwards them to the output queue, until the end of the stream
+         * @param input The input queue
+         * @param output The output queue
+         * @throws Exception
+         */
+        protected void transform(BlockingQueue<PipelineTweet> input, BlockingQueue<PipelineTweet> output) throws Exception
+        {
+            PipelineTweet tweet;
+            while((tweet = take(input)) != END)
+            {
+                long start = System.nanoTime();
+                process(tweet);
+                busyTime += System.nanoTime() - start;
+                put(output, tweet);
+            }
+            put(output, END);
+        }
+
+        /**
+         * Processes a single tweet (See transform)
+         * @param tweet The tweet
+         * @throws Exception
+         */
+        protected void process(PipelineTweet tweet) throws Exception
+        {
+        }
+    }
+
+    /**
+     * Reads the tweets from the database, in chronological order
+     */
+    private class ReaderStage extends Stage
+    {
+        private ReaderStage()
+        {
+            super("reader");
+        }
+
+        @Override
+        protected void runStage() throws Exception
+        {
+            long start = System.nanoTime();
+
+            //The tweets are fed in chronological order
+            TweetReader reader = new TweetReader(databasePath, true, true);
+            try
+            {
+                while(reader.hasNext())
+                {
+                    Tweet row = reader.next();
+                    PipelineTweet tweet = new PipelineTweet(row.getId(), row.getText(), row.getTimestamp());
+                    super.busyTime += System.nanoTime() - start;
+                    put(rawTweets, tweet);
+                    start = System.nanoTime();
+                }
+            }
+            finally
+            {
+                reader.close();
+            }
+            put(rawTweets, END);
+        }
+    }
+
+    /**
+     * Tokenizes the tweets text
+     */
+    private class TokenizerStage extends Stage
+    {
+        private TokenizerStage()
+        {
+            super("tokenizer");
+        }
+
+        @Override
+        protected void runStage() throws Exception
+        {
+            transform(rawTweets, tokenizedTweets);
+        }
+
+        @Override
+        protected void process(PipelineTweet tweet) throws IOException
+        {
+            tweet.tokens = FrequencyMatrixBuilder.getTokens(analyzer, tweet.text);
+            tweet.text = null;
+        }
+    }
+
+    /**
+     * Builds the sparse vector of the tweets
+     */
+    private class VectorizerStage extends Stage
+    {
+        private VectorizerStage()
+        {
+            super("vectorizer");
+        }
+
+        @Override
+        protected void runStage() throws Exception
+        {
+            transform(tokenizedTweets, vectorizedTweets);
+        }
+
+        @Override
+        protected void process(PipelineTweet tweet)
+        {
+            tweet.vector = vectorizer.getSparseVector(tweet.tokens);
+            tweet.tokens = null;
+        }
+    }
+
+    /**
+     * Assigns the tweets to the clusters
+     */
+    private class ClustererStage extends Stage
+    {
+        private ClustererStage()
+        {
+            super("clusterer");
+        }
+
+        @Override
+        protected void runStage() throws Exception
+        {
+            transform(vectorizedTweets, clusteredTweets);
+            streamingFSD.flush();
+        }
+
+        @Override
+        protected void process(PipelineTweet tweet) throws IOException
+        {
+            tweet.assignment = streamingFSD.process(tweet.id, tweet.vector, tweet.timestamp);
+            tweet.vector = null;
+        }
+    }
+
+    /**
+     * Writes the clustering and the seeds files
+     */
+    private class WriterStage extends Stage
+    {
+        private WriterStage()
+        {
+            super("writer");
+        }
+
+        @Override
+        protected void runStage() throws Exception
+        {
+            FileWriter clusteringWriter = new FileWriter(clusteringFilePath);
+            try
+            {
+                FileWriter seedsWriter = new FileWriter(seedsFilePath);
+                try
+                {
+                    PipelineTweet tweet;
+                    while((tweet = take(clusteredTweets)) != END)
+                    {
+                        long start = System.nanoTime();
+                        String line = String.format("%d %d\n", tweet.assignment.getClusterId(), tweet.id);
+                        clusteringWriter.append(line);
+                        if(tweet.assignment.isNewStory())
+                        {
+                            seedsWriter.append(line);
+                        }
+                        super.busyTime += System.nanoTime() - start;
+                    }
+                }
+                finally
+                {
+                    seedsWriter.close();
+                }
+            }
+            finally
+            {
+                clusteringWriter.close();
+            }
+        }
+    }
+}
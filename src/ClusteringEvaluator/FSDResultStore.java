@@ -0,0 +1,248 @@
+package ClusteringEvaluator;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.TreeMap;
+
+
+/**
+ * SQLite storage of the FSD clusterings and of their evaluations, so that the runs can be compared
+ * with SQL queries instead of re-reading text files
+ * fsd_runs : one row per clustering (run_id, created_at, algorithm, threshold, clusters, tweets, weighting)
+ * fsd_clusters : one row per clustered tweet (run_id, cluster_id, tweet_id, is_seed, similarity),
+ *                the similarity being the cosine similarity of the tweet with the seed of its cluster, both weighted
+ *                with the terms weighting of the run as during the clustering (See TermWeighting)
+ * fsd_reports : one row per evaluated clustering (run_id, then the metrics of ClusteringReport)
+ * The tables are created if they do not exist yet. The store owns its connection, closed by close.
+ * An instance is not thread safe.
+ */
+public class FSDResultStore
+{
+    /** Tables */
+    public static final String RUNS_TABLE = "fsd_runs";
+    public static final String CLUSTERS_TABLE = "fsd_clusters";
+    public static final String REPORTS_TABLE = "fsd_reports";
+
+    /** Columns */
+    private static final String RUN_ID = "run_id";
+    private static final String CLUSTER_ID = "cluster_id";
+    private static final String TWEET_ID = "tweet_id";
+    private static final String WEIGHTING = "weighting";
+
+    /** Connection to the results database */
+    private final Connection connection;
+    /** ID of the last run saved by this instance, -1 if none */
+    private int lastRunId = -1;
+
+
+    /**
+     * Opens the results database and creates the missing tables
+     * @param databasePath The results database path (See FSDBuilder.FSD_RESULTS_DATABASE)
+     * @throws ClassNotFoundException If the database driver is missing
+     * @throws SQLException
+     */
+    public FSDResultStore(String databasePath) throws ClassNotFoundException, SQLException
+    {
+        Class.forName("org.sqlite.JDBC");
+        connection = DriverManager.getConnection(databasePath);
+        try
+        {
+            createTables();
+        }
+        catch(SQLException ex)
+        {
+            connection.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Creates the missing tables and indexes
+     * @throws SQLException
+     */
+    private void createTables() throws SQLException
+    {
+        Statement statement = connection.createStatement();
+        statement.executeUpdate("CREATE TABLE IF NOT EXISTS " + RUNS_TABLE
+                + " (run_id INTEGER PRIMARY KEY, created_at INTEGER NOT NULL, algorithm TEXT NOT NULL,"
+                + " threshold REAL, clusters INTEGER NOT NULL, tweets INTEGER NOT NULL, weighting TEXT NOT NULL)");
+        statement.executeUpdate("CREATE TABLE IF NOT EXISTS " + CLUSTERS_TABLE
+                + " (run_id INTEGER NOT NULL, cluster_id INTEGER NOT NULL, tweet_id INTEGER NOT NULL,"
+                + " is_seed INTEGER NOT NULL, similarity REAL NOT NULL)");
+        statement.executeUpdate("CREATE INDEX IF NOT EXISTS fsd_clusters_run ON " + CLUSTERS_TABLE + " (run_id, cluster_id)");
+        statement.executeUpdate("CREATE INDEX IF NOT EXISTS fsd_clusters_tweet ON " + CLUSTERS_TABLE + " (tweet_id)");
+        statement.executeUpdate("CREATE TABLE IF NOT EXISTS " + REPORTS_TABLE
+                + " (run_id INTEGER PRIMARY KEY, f_score REAL, purity REAL, nmi REAL, ari REAL,"
+                + " bcubed_precision REAL, bcubed_recall REAL, homogeneity REAL, completeness REAL, v_measure REAL)");
+        statement.close();
+    }
+
+    /**
+     * Saves a clustering as a new run, in a single transaction
+     * @param algorithm The name of the clustering algorithm, e.g. "fsd"
+     * @param threshold The cosine similarity threshold of the run
+     * @param weighting The terms weighting of the run
+     * @param clustering An FSD clustering map :
+     *                          Key = clusterId
+     *                          Value = tweets ID list, in arrival order : the first tweet is the cluster seed
+     * @param freqMatrix The tweets frequency matrix, in the order of the clustering, used to calculate the similarity
+     *                   of each tweet with its seed
+     * @return The run ID
+     * @throws SQLException
+     */
+    public int saveRun(String algorithm, double threshold, TermWeighting weighting, HashMap<Integer, LongList> clustering, LongHashMap<SparseVector> freqMatrix) throws SQLException
+    {
+        System.out.println("Saving FSD clustering...");
+        int runId = getNextRunId();
+        int tweetsNumber = 0;
+        for(LongList tweetIds : clustering.values())
+        {
+            tweetsNumber += tweetIds.size();
+        }
+
+        LongHashMap<SparseVector> weightedMatrix = getWeightedMatrix(freqMatrix, weighting);
+        DBBatchWriter writer = DBManager.createBatchWriter(connection, DBBatchWriter.DEFAULT_BATCH_SIZE);
+        try
+        {
+            TreeMap<String, Object> run = new TreeMap<String, Object>();
+            run.put(RUN_ID, runId);
+            run.put("created_at", System.currentTimeMillis());
+            run.put("algorithm", algorithm);
+            run.put("threshold", threshold);
+            run.put("clusters", clustering.size());
+            run.put("tweets", tweetsNumber);
+            run.put(WEIGHTING, weighting.name());
+            writer.insertInto(RUNS_TABLE, run);
+
+            TreeMap<String, Object> row = new TreeMap<String, Object>();
+            row.put(RUN_ID, runId);
+            for(Integer clusterId : clustering.keySet())
+            {
+                LongList tweetIds = clustering.get(clusterId);
+                SparseVector seed = weightedMatrix.get(tweetIds.get(0));
+                row.put(CLUSTER_ID, clusterId);
+                for(int i = 0; i < tweetIds.size(); ++i)
+                {
+                    SparseVector vector = weightedMatrix.get(tweetIds.get(i));
+                    row.put(TWEET_ID, tweetIds.get(i));
+                    row.put("is_seed", i == 0 ? 1 : 0);
+                    row.put("similarity", i == 0 ? 1.0 : vector.getCosineSimilarity(seed));
+                    writer.insertInto(CLUSTERS_TABLE, row);
+                }
+            }
+            writer.commit();
+        }
+        catch(SQLException ex)
+        {
+            writer.rollback();
+            throw ex;
+        }
+        finally
+        {
+            writer.close();
+        }
+
+        lastRunId = runId;
+        System.out.println(String.format("Done : run %d", runId));
+        return runId;
+    }
+
+    /**
+     * Weights the tweets vectors as the FSD does, the document frequencies being those of the tweets met so far
+     * (See StreamingFSD.process), so that the saved similarities are the ones compared with the threshold
+     * @param freqMatrix The tweets frequency matrix, in the order of the clustering
+     * @param weighting The terms weighting
+     * @return The weighted vectors, the frequency matrix itself for the RAW weighting
+     */
+    private static LongHashMap<SparseVector> getWeightedMatrix(LongHashMap<SparseVector> freqMatrix, TermWeighting weighting)
+    {
+        if(weighting == TermWeighting.RAW)
+        {
+            return freqMatrix;
+        }
+        LongHashMap<SparseVector> weightedMatrix = new LongHashMap<SparseVector>();
+        DocumentFrequencies documentFrequencies = new DocumentFrequencies();
+        for(int position = 0; position < freqMatrix.size(); ++position)
+        {
+            SparseVector vector = freqMatrix.getValue(position);
+            documentFrequencies.add(vector);
+            weightedMatrix.put(freqMatrix.getKey(position), weighting.getWeightedVector(vector, documentFrequencies));
+        }
+        return weightedMatrix;
+    }
+
+    /**
+     * Saves the evaluation of a run, replacing the previous one if any
+     * @param runId The run ID
+     * @param report The evaluation of the run clustering
+     * @throws SQLException
+     */
+    public void saveReport(int runId, ClusteringReport report) throws SQLException
+    {
+        TreeMap<String, Object> row = new TreeMap<String, Object>();
+        row.put(RUN_ID, runId);
+        row.put("f_score", report.getFScore());
+        row.put("purity", report.getPurity());
+        row.put("nmi", report.getNormalizedMutualInformation());
+        row.put("ari", report.getAdjustedRandIndex());
+        row.put("bcubed_precision", report.getBCubedPrecision());
+        row.put("bcubed_recall", report.getBCubedRecall());
+        row.put("homogeneity", report.getHomogeneity());
+        row.put("completeness", report.getCompleteness());
+        row.put("v_measure", report.getVMeasure());
+
+        DBBatchWriter writer = DBManager.createBatchWriter(connection, 1);
+        try
+        {
+            Statement statement = connection.createStatement();
+            statement.executeUpdate(String.format("%s %s %s %s %s = %d", DBManager.DELETE, DBManager.FROM, REPORTS_TABLE, DBManager.WHERE, RUN_ID, runId));
+            statement.close();
+            writer.insertInto(REPORTS_TABLE, row);
+            writer.commit();
+        }
+        catch(SQLException ex)
+        {
+            writer.rollback();
+            throw ex;
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+    /**
+     * Closes the connection to the results database
+     * @throws SQLException
+     */
+    public void close() throws SQLException
+    {
+        connection.close();
+    }
+
+    /**
+     * @return The ID of the last run saved by this instance, -1 if none
+     */
+    public int getLastRunId()
+    {
+        return lastRunId;
+    }
+
+    /**
+     * @return The ID following every run ID of the database
+     * @throws SQLException
+     */
+    private int getNextRunId() throws SQLException
+    {
+        Statement statement = connection.createStatement();
+        ResultSet rs = statement.executeQuery(String.format("%s COALESCE(MAX(%s), 0) + 1 %s %s", DBManager.SELECT, RUN_ID, DBManager.FROM, RUNS_TABLE));
+        int runId = rs.next() ? rs.getInt(1) : 1;
+        rs.close();
+        statement.close();
+        return runId;
+    }
+}
@@ -0,0 +1,62 @@
+package ClusteringEvaluator;
+
+import java.io.FileWriter;
+import java.io.IOException;
+
+
+/**
+ * Writes the finished clusters in the same text files as FSDBuilder :
+ * one "clusterId tweetId" line per tweet in the clustering file and per seed in the seeds file
+ */
+public class FileClusterSink implements ClusterSink
+{
+    /** Clustering file writer */
+    private final FileWriter clusteringWriter;
+    /** Seeds file writer */
+    private final FileWriter seedsWriter;
+
+
+    /**
+     * @param clusteringFilePath The clustering file path
+     * @param seedsFilePath The seeds file path
+     * @throws IOException
+     */
+    public FileClusterSink(String clusteringFilePath, String seedsFilePath) throws IOException
+    {
+        clusteringWriter = new FileWriter(clusteringFilePath);
+        seedsWriter = new FileWriter(seedsFilePath);
+    }
+
+    @Override
+    public void clusterClosed(int clusterId, long seedTweetId, long[] tweetIds) throws IOException
+    {
+        String key = Integer.toString(clusterId);
+        for(long tweetId : tweetIds)
+        {
+            clusteringWriter.append(key);
+            clusteringWriter.append(" ");
+            clusteringWriter.append(Long.toString(tweetId));
+            clusteringWriter.append("\n");
+        }
+        seedsWriter.append(key);
+        seedsWriter.append(" ");
+        seedsWriter.append(Long.toString(seedTweetId));
+        seedsWriter.append("\n");
+    }
+
+    /**
+     * Flushes and closes both files, the seeds file being closed even if the clustering file fails
+     * @throws IOException
+     */
+    public void close() throws IOException
+    {
+        try
+        {
+            clusteringWriter.close();
+        }
+        finally
+        {
+            seedsWriter.close();
+        }
+    }
+}
@@ -4,19 +4,23 @@
  */
 package ClusteringEvaluator;
 
-import java.io.FileWriter;
 import java.io.IOException;
-import java.sql.ResultSet;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.FieldType;
@@ -40,24 +44,78 @@ public class FrequencyMatrixBuilder {
      * Frequency matrix file paths
      */
     private static final String FREQUENCY_MATRIX_FILE_PATH = "results\\frequencyMatrix.csv";
+    private static final String FREQUENCY_MATRIX_BINARY_FILE_PATH = "results\\frequencyMatrix" + BinaryFormat.EXTENSION;
     /**
      * Database configuration
      */
     private static final String DATABASE_DRIVER = "jdbc:sqlite";
     private static final String DATABASE_FILE_PATH = "resources\\tweets.db";
-    private static final String TWEETS_DATABASE = String.format("%s:%s", DATABASE_DRIVER, DATABASE_FILE_PATH);
+    public static final String TWEETS_DATABASE = String.format("%s:%s", DATABASE_DRIVER, DATABASE_FILE_PATH);
     public static final String ID = "id";
     public static final String TEXT = "text";
+    public static final String CREATED_AT = "created_at";
+    /**
+     * Format of the tweets creation date, e.g. "Thu Jul 07 16:25:53 +0000 2011"
+     */
+    public static final String CREATED_AT_FORMAT = "EEE MMM dd HH:mm:ss Z yyyy";
+    /**
+     * Metrics of the frequency matrix building (See Metrics) : number of
+     * tweets vectorized and time of each one, in nanoseconds
+     */
+    private static final AtomicLong TWEETS_COUNTER = Metrics.get().getCounter("frequencyMatrix.tweets");
+    private static final Histogram LATENCY_HISTOGRAM = Metrics.get().getHistogram("frequencyMatrix.tweetLatency");
+
+    /**
+     * Returns the terms matrix of the tweets of the database : the binary
+     * matrix of the last run is mapped if the database did not change since,
+     * otherwise the matrix is built then written for the next runs (See
+     * BinaryFormat)
+     *
+     * @param freqMatrix For each tweet ID, the sparse terms frequency vector
+     * @param dictionary The terms dictionary, completed with the new terms
+     * @throws IOException
+     */
+    public static void loadTermsFrequencyMatrix(LongHashMap<SparseVector> freqMatrix, TermDictionary dictionary) throws IOException {
+        if (BinaryFormat.isUpToDate(FREQUENCY_MATRIX_BINARY_FILE_PATH, DATABASE_FILE_PATH)) {
+            System.out.println("Loading frequency matrix...");
+            BinaryFormat.readFrequencyMatrix(FREQUENCY_MATRIX_BINARY_FILE_PATH, freqMatrix, dictionary);
+            System.out.println("Done");
+            return;
+        }
+        getTermsFrequencyMatrix(freqMatrix, dictionary, null);
+        BinaryFormat.writeFrequencyMatrix(FREQUENCY_MATRIX_BINARY_FILE_PATH, freqMatrix, dictionary);
+    }
+
+    /**
+     * Builds the terms matrix associated to the tweets corpus, running the analyzer directly on each text
+     *
+     * @param freqMatrix For each tweet ID, the sparse terms frequency vector
+     * @param dictionary The terms dictionary, completed with the new terms
+     * @param tuples
+     * @throws IOException
+     */
+    public static void getTermsFrequencyMatrix(LongHashMap<SparseVector> freqMatrix, TermDictionary dictionary, List<HashMap<String, String>> tuples) throws IOException {
+        getTermsFrequencyMatrix(freqMatrix, dictionary, tuples, false);
+    }
 
     /**
      * Builds the terms matrix associated to the tweets corpus
      *
-     * @param freqMatrix
-     * @param uniqueTerms
+     * @param freqMatrix For each tweet ID, the sparse terms frequency vector
+     * @param dictionary The terms dictionary, completed with the new terms
      * @param tuples
+     * @param useIndex True to index the tuples in a Lucene index and read
+     * back the term vectors, false to run the analyzer directly on each text
+     * in a single pass. Both produce the same terms frequencies.
      * @throws IOException
      */
-    public static void getTermsFrequencyMatrix(HashMap<String, HashMap<String, Long>> freqMatrix, HashSet<String> uniqueTerms, List<HashMap<String, String>> tuples) throws IOException {
+    public static void getTermsFrequencyMatrix(LongHashMap<SparseVector> freqMatrix, TermDictionary dictionary, List<HashMap<String, String>> tuples, boolean useIndex) throws IOException {
+        long startTime = System.nanoTime();
+        if (!useIndex) {
+            getTermsFrequencyMatrixDirect(freqMatrix, dictionary, tuples);
+            Metrics.get().addStageTime("frequencyMatrix", startTime);
+            return;
+        }
         System.out.println("Building frequency matrix...");
 
         // 0. Specify the analyzer for tokenizing text.
@@ -81,65 +139,205 @@ public class FrequencyMatrixBuilder {
         w.close();
 
         IndexReader reader = DirectoryReader.open(index);
+        SparseVectorBuilder vectorBuilder = new SparseVectorBuilder();
 
         for (int i = 0; i < reader.numDocs(); i++) {
             Document doc = reader.document(i);
-            String id = doc.get(ID);
+            long id = Long.parseLong(doc.get(ID));
             Terms vector = reader.getTermVector(i, TEXT);
             if (vector != null) {
                 TermsEnum termsEnum = null;
                 termsEnum = vector.iterator(termsEnum);
-                HashMap<String, Long> frequencies = new HashMap<String, Long>();
                 BytesRef text = null;
-                ArrayList<String> terms = new ArrayList<String>();
                 while ((text = termsEnum.next()) != null) {
                     String term = text.utf8ToString();
                     long freq = (long) termsEnum.totalTermFreq();
-                    frequencies.put(term, freq);
-                    terms.add(term);
-                    uniqueTerms.add(term);
+                    vectorBuilder.add(dictionary.add(term), freq);
                 }
-                freqMatrix.put(id, frequencies);
+                freqMatrix.put(id, vectorBuilder.build());
             }
+            TWEETS_COUNTER.incrementAndGet();
         }
         reader.close();
+        Metrics.get().addStageTime("frequencyMatrix", startTime);
         System.out.println("Done");
     }
 
     /**
-     * Fetch tweets from database
+     * Builds the terms matrix by running the analyzer on each text : no index,
+     * no stored field and no commit
      *
-     * @param w
+     * @param freqMatrix
+     * @param dictionary
+     * @param tuples
      * @throws IOException
      */
-    private static void addDocsWithDB(IndexWriter w) throws IOException {
+    private static void getTermsFrequencyMatrixDirect(LongHashMap<SparseVector> freqMatrix, TermDictionary dictionary, List<HashMap<String, String>> tuples) throws IOException {
+        System.out.println("Building frequency matrix...");
+        StandardAnalyzer analyzer = new StandardAnalyzer(Version.LUCENE_44);
+        SparseVectorBuilder vectorBuilder = new SparseVectorBuilder();
+
+        if (tuples == null) {
+            addTermsWithDB(freqMatrix, dictionary, analyzer, vectorBuilder);
+        } else {
+            for (HashMap<String, String> tuple : tuples) {
+                addTerms(Long.parseLong(tuple.get(ID)), tuple.get(TEXT), freqMatrix, dictionary, analyzer, vectorBuilder);
+            }
+        }
+        analyzer.close();
+        System.out.println("Done");
+    }
+
+    /**
+     * Fetch tweets text from database and add their terms vectors to the
+     * matrix
+     *
+     * @param freqMatrix
+     * @param dictionary
+     * @param analyzer
+     * @param vectorBuilder
+     * @throws IOException
+     */
+    private static void addTermsWithDB(LongHashMap<SparseVector> freqMatrix, TermDictionary dictionary, Analyzer analyzer, SparseVectorBuilder vectorBuilder) throws IOException {
         try {
+            TweetReader reader = new TweetReader(TWEETS_DATABASE, false, false);
             try {
-                DBManager.ConnectToDB(TWEETS_DATABASE, 30);
-            } catch (ClassNotFoundException ex) {
-                Logger.getLogger(FSDBuilder.class.getName()).log(Level.SEVERE, null, ex);
-            } catch (SQLException ex) {
-                Logger.getLogger(FSDBuilder.class.getName()).log(Level.SEVERE, null, ex);
+                while (reader.hasNext()) {
+                    Tweet tweet = reader.next();
+                    addTerms(tweet.getId(), tweet.getText(), freqMatrix, dictionary, analyzer, vectorBuilder);
+                }
+            } finally {
+                reader.close();
             }
+        } catch (ClassNotFoundException ex) {
+            Logger.getLogger(FSDBuilder.class.getName()).log(Level.SEVERE, null, ex);
+        } catch (SQLException ex) {
+            Logger.getLogger(FSDBuilder.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
 
-            Statement statement = DBManager.connection.createStatement();
-            statement.setQueryTimeout(30);  // set timeout to 30 sec.
+    /**
+     * Add the terms vector of a single text to the matrix. As with the index,
+     * a text without any term has no terms vector
+     *
+     * @param id
+     * @param text
+     * @param freqMatrix
+     * @param dictionary
+     * @param analyzer
+     * @param vectorBuilder
+     * @throws IOException
+     */
+    private static void addTerms(long id, String text, LongHashMap<SparseVector> freqMatrix, TermDictionary dictionary, Analyzer analyzer, SparseVectorBuilder vectorBuilder) throws IOException {
+        long startTime = System.nanoTime();
+        TokenStream tokenStream = analyzer.tokenStream(TEXT, new StringReader(text == null ? "" : text));
+        CharTermAttribute termAttribute = tokenStream.addAttribute(CharTermAttribute.class);
 
-            ResultSet rs = statement.executeQuery("SELECT * FROM tweets");
-            long count = 0;
+        tokenStream.reset();
+        while (tokenStream.incrementToken()) {
+            vectorBuilder.add(dictionary.add(termAttribute.toString()), 1);
+        }
+        tokenStream.end();
+        tokenStream.close();
+
+        if (vectorBuilder.size() > 0) {
+            freqMatrix.put(id, vectorBuilder.build());
+        }
+        TWEETS_COUNTER.incrementAndGet();
+        LATENCY_HISTOGRAM.record(System.nanoTime() - startTime);
+    }
 
-            while (rs.next()) {
-                HashMap<String, String> tuple = new HashMap<String, String>();
-                for (int i = 1; i <= rs.getMetaData().getColumnCount(); i++) {
-                    String f = rs.getString(i) == null ? "" : rs.getString(i);
-                    tuple.put(rs.getMetaData().getColumnLabel(i), f);
+    /**
+     * Returns the terms frequencies of a sparse vector, keyed by term
+     *
+     * @param vector
+     * @param dictionary
+     * @return For each term of the vector, its frequency
+     */
+    public static HashMap<String, Long> getTermsVector(SparseVector vector, TermDictionary dictionary) {
+        HashMap<String, Long> frequencies = new HashMap<String, Long>();
+        int[] termIds = vector.getTermIds();
+        float[] weights = vector.getWeights();
+        for (int i = 0; i < termIds.length; i++) {
+            frequencies.put(dictionary.getTerm(termIds[i]), (long) weights[i]);
+        }
+        return frequencies;
+    }
+
+    /**
+     * Builds the tweets frequency matrix with and without the Lucene index,
+     * then displays the time, the heap used and whether both matrices are
+     * identical. The peak heap is the highest usage of the heap memory pools
+     * during the build, the retained heap the usage after a garbage
+     * collection once the matrix is built, both above the usage before the
+     * build (java.lang.management only, so that any JVM can run it)
+     *
+     * @throws IOException
+     */
+    public static void compareFrequencyMatrixModes() throws IOException {
+        MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+        List<HashMap<Long, HashMap<String, Long>>> matrices = new ArrayList<HashMap<Long, HashMap<String, Long>>>();
+        StringBuilder report = new StringBuilder("Mode\tTime (ms)\tPeak heap (MB)\tRetained heap (MB)\tTerms\n");
+
+        for (boolean useIndex : new boolean[]{true, false}) {
+            LongHashMap<SparseVector> freqMatrix = new LongHashMap<SparseVector>();
+            TermDictionary dictionary = new TermDictionary();
+            System.gc();
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                pool.resetPeakUsage();
+            }
+            long baseline = memoryBean.getHeapMemoryUsage().getUsed();
+            long time = System.nanoTime();
+
+            getTermsFrequencyMatrix(freqMatrix, dictionary, null, useIndex);
+
+            time = System.nanoTime() - time;
+            long peak = 0;
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    peak += pool.getPeakUsage().getUsed();
                 }
-                addDoc(tuple, w);
-                if (count % 100 == 0) {
-                    System.out.println(count);
+            }
+            System.gc();
+            long retained = memoryBean.getHeapMemoryUsage().getUsed();
+            report.append(String.format("%s\t%d\t%d\t%d\t%d\n", useIndex ? "index" : "direct", time / 1000000,
+                    (peak - baseline) / (1024 * 1024), (retained - baseline) / (1024 * 1024), dictionary.size()));
+
+            //Both modes assign the term IDs in a different order, so that the matrices are compared by term
+            HashMap<Long, HashMap<String, Long>> termsMatrix = new HashMap<Long, HashMap<String, Long>>();
+            for (int position = 0; position < freqMatrix.size(); position++) {
+                termsMatrix.put(freqMatrix.getKey(position), getTermsVector(freqMatrix.getValue(position), dictionary));
+            }
+            matrices.add(termsMatrix);
+        }
+
+        report.append(String.format("Identical matrices : %b\n", matrices.get(0).equals(matrices.get(1))));
+        System.out.print(report);
+    }
+
+    /**
+     * Fetch tweets from database, only the id and text columns being
+     * indexed
+     *
+     * @param w
+     * @throws IOException
+     */
+    private static void addDocsWithDB(IndexWriter w) throws IOException {
+        try {
+            TweetReader reader = new TweetReader(TWEETS_DATABASE, false, false);
+            AtomicLong indexedCounter = Metrics.get().getCounter("frequencyMatrix.indexedTweets");
+
+            try {
+                while (reader.hasNext()) {
+                    Tweet tweet = reader.next();
+                    addDoc(Long.toString(tweet.getId()), tweet.getText(), w);
+                    indexedCounter.incrementAndGet();
                 }
-                count++;
+            } finally {
+                reader.close();
             }
+        } catch (ClassNotFoundException ex) {
+            Logger.getLogger(FSDBuilder.class.getName()).log(Level.SEVERE, null, ex);
         } catch (SQLException ex) {
             Logger.getLogger(FSDBuilder.class.getName()).log(Level.SEVERE, null, ex);
         }
@@ -155,66 +353,120 @@ public class FrequencyMatrixBuilder {
     private static void addDoc(HashMap<String, String> tuple, IndexWriter w) throws IOException {
         Document doc = new Document();
         for (String key : tuple.keySet()) {
-            FieldType type = new FieldType();
-            type.setIndexed(true);
-            type.setStored(true);
-            type.setStoreTermVectors(true);
-            Field field = new Field(key, tuple.get(key), type);
-            doc.add(field);
+            doc.add(new Field(key, tuple.get(key), getFieldType()));
         }
         w.addDocument(doc);
     }
 
     /**
-     * Exports frequuency matrix to CSV file
+     * Add a single tweet to the index
      *
-     * @param freqMatrix
-     * @param uniqueTerms
+     * @param id
+     * @param text
+     * @param w
      * @throws IOException
      */
-    public static void exportFrequencyMatrix(HashMap<String, HashMap<String, Long>> freqMatrix, HashSet<String> uniqueTerms) throws IOException {
-        System.out.println("Exporting frequency matrix...");
-        FileWriter writer = new FileWriter(FREQUENCY_MATRIX_FILE_PATH);
-
-        writer.append("\"id_tweet\",");
-        Iterator it = uniqueTerms.iterator();
-        while (it.hasNext()) {
-            String term = (String) it.next();
-            writer.append("\"");
-            writer.append(term);
-            writer.append("\"");
-            if (it.hasNext()) {
-                writer.append(",");
-            }
+    private static void addDoc(String id, String text, IndexWriter w) throws IOException {
+        Document doc = new Document();
+        doc.add(new Field(ID, id, getFieldType()));
+        doc.add(new Field(TEXT, text, getFieldType()));
+        w.addDocument(doc);
+    }
+
+    /**
+     * @return The type of the indexed fields : indexed, stored and with
+     * term vectors
+     */
+    private static FieldType getFieldType() {
+        FieldType type = new FieldType();
+        type.setIndexed(true);
+        type.setStored(true);
+        type.setStoreTermVectors(true);
+        return type;
+    }
+
+    /**
+     * Tokenizes a text the same way the text field is indexed
+     *
+     * @param analyzer
+     * @param text
+     * @return The terms of the text, duplicates included, in order of appearance
+     * @throws IOException
+     */
+    public static List<String> getTokens(Analyzer analyzer, String text) throws IOException {
+        List<String> tokens = new ArrayList<String>();
+        TokenStream tokenStream = analyzer.tokenStream(TEXT, new StringReader(text));
+        CharTermAttribute termAttribute = tokenStream.addAttribute(CharTermAttribute.class);
+
+        tokenStream.reset();
+        while (tokenStream.incrementToken()) {
+            tokens.add(termAttribute.toString());
         }
+        tokenStream.end();
+        tokenStream.close();
+        return tokens;
+    }
 
-        writer.append("\n");
-
-        for (String key : freqMatrix.keySet()) {
-            HashMap<String, Long> vector = freqMatrix.get(key);
-            Iterator itt = uniqueTerms.iterator();
-            writer.append("\"");
-            writer.append(key);
-            writer.append("\"");
-            writer.append(",");
-            while (itt.hasNext()) {
-                String term = (String) itt.next();
-                writer.append("\"");
-                if (vector.get(term) == null) {
-                    writer.append("0");
-                } else {
-                    writer.append(String.valueOf(vector.get(term)));
-                }
-                writer.append("\"");
+    /**
+     * Exports the frequency matrix as a sparse coordinate CSV : one
+     * "id_tweet","term","frequency" line per non-zero term of each tweet, in
+     * the matrix order. The file is written through a buffered channel, so
+     * that its size and its cost only depend on the number of non-zero terms,
+     * not on the vocabulary. KNIME reads it with the CSV Reader node, and the
+     * Pivoting node (group by id_tweet, pivot on term, sum of frequency,
+     * missing values replaced by 0) rebuilds the dense table of the K-means.
+     * The binary form of the matrix is written by loadTermsFrequencyMatrix
+     * (See BinaryFormat).
+     *
+     * @param freqMatrix For each tweet ID, the sparse terms frequency vector
+     * @param dictionary The terms dictionary
+     * @throws IOException
+     */
+    public static void exportFrequencyMatrix(LongHashMap<SparseVector> freqMatrix, TermDictionary dictionary) throws IOException {
+        System.out.println("Exporting frequency matrix...");
+        ChannelWriter writer = new ChannelWriter(FREQUENCY_MATRIX_FILE_PATH);
+
+        // Quoted terms, encoded once
+        byte[][] terms = new byte[dictionary.size()][];
+        for (int termId = 0; termId < terms.length; termId++) {
+            terms[termId] = getQuotedValue(dictionary.getTerm(termId)).getBytes(ChannelWriter.UTF8);
+        }
 
-                if (itt.hasNext()) {
-                    writer.append(",");
+        try {
+            writer.writeString("\"id_tweet\",\"term\",\"frequency\"\n");
+            for (int row = 0; row < freqMatrix.size(); row++) {
+                SparseVector vector = freqMatrix.getValue(row);
+                int[] termIds = vector.getTermIds();
+                float[] weights = vector.getWeights();
+                String id = getQuotedValue(Long.toString(freqMatrix.getKey(row))) + ",";
+                for (int i = 0; i < termIds.length; i++) {
+                    writer.writeString(id);
+                    writer.writeBytes(terms[termIds[i]]);
+                    writer.writeString(",\"" + getWeightString(weights[i]) + "\"\n");
                 }
             }
-            writer.append("\n");
+        } finally {
+            writer.close();
         }
-        writer.flush();
-        writer.close();
         System.out.println("Done");
     }
+
+    /**
+     * @param value A CSV value
+     * @return The quoted value, its quotes being doubled
+     */
+    private static String getQuotedValue(String value) {
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+
+    /**
+     * @param weight A term weight
+     * @return The weight, without any decimal if it is a whole number
+     */
+    private static String getWeightString(float weight) {
+        if (weight == (long) weight) {
+            return Long.toString((long) weight);
+        }
+        return Float.toString(weight);
+    }
 }
@@ -0,0 +1,151 @@
+package ClusteringEvaluator;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * Histogram of positive values with a bounded relative error, e.g. latencies in nanoseconds or candidate set sizes
+ * As in an HDR histogram, the values below 128 have their own bucket, and every power of two above is split
+ * in 64 buckets, so that a percentile is read with an error below 1.6% in a fixed array of 3712 counts,
+ * whatever the range of the values. The recording is lock free. An instance is thread safe.
+ */
+public class Histogram
+{
+    /** Number of bits of a bucket value : the values below 2^SUB_BITS are exact */
+    private static final int SUB_BITS = 7;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int HALF_COUNT = SUB_COUNT / 2;
+    private static final int BUCKETS_NUMBER = SUB_COUNT + (63 - SUB_BITS) * HALF_COUNT;
+
+    /** Count of each bucket */
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS_NUMBER);
+    /** Number of values */
+    private final AtomicLong count = new AtomicLong();
+    /** Sum of the values */
+    private final AtomicLong sum = new AtomicLong();
+    /** Maximum value */
+    private final AtomicLong max = new AtomicLong();
+
+
+    /**
+     * Records a value
+     * @param value The value, the negative values being recorded as 0
+     */
+    public void record(long value)
+    {
+        value = Math.max(value, 0);
+        counts.incrementAndGet(getBucket(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        long currentMax = max.get();
+        while(value > currentMax && !max.compareAndSet(currentMax, value))
+        {
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * Moves the values of this histogram to another one, this one being emptied
+     * The values recorded concurrently are either moved or kept, never lost.
+     * @param histogram The histogram receiving the values
+     */
+    public void drainTo(Histogram histogram)
+    {
+        for(int bucket = 0; bucket < BUCKETS_NUMBER; ++bucket)
+        {
+            if(counts.get(bucket) != 0)
+            {
+                histogram.counts.addAndGet(bucket, counts.getAndSet(bucket, 0));
+            }
+        }
+        histogram.count.addAndGet(count.getAndSet(0));
+        histogram.sum.addAndGet(sum.getAndSet(0));
+        long drainedMax = max.getAndSet(0);
+        long currentMax = histogram.max.get();
+        while(drainedMax > currentMax && !histogram.max.compareAndSet(currentMax, drainedMax))
+        {
+            currentMax = histogram.max.get();
+        }
+    }
+
+    /**
+     * @return The number of values
+     */
+    public long getCount()
+    {
+        return count.get();
+    }
+
+    /**
+     * @return The mean of the values, 0 if there is none
+     */
+    public double getMean()
+    {
+        long n = count.get();
+        return n == 0 ? 0 : sum.get() / (double) n;
+    }
+
+    /**
+     * @return The maximum value, 0 if there is none
+     */
+    public long getMax()
+    {
+        return max.get();
+    }
+
+    /**
+     * Returns a percentile of the values
+     * @param percentile The percentile, from 0 to 100
+     * @return The highest value of the bucket holding the percentile, at most the maximum value, 0 if there is none
+     */
+    public long getPercentile(double percentile)
+    {
+        long n = count.get();
+        if(n == 0)
+        {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+        long cumulated = 0;
+        for(int bucket = 0; bucket < BUCKETS_NUMBER; ++bucket)
+        {
+            cumulated += counts.get(bucket);
+            if(cumulated >= rank)
+            {
+                return Math.min(getBucketMax(bucket), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * @param value A positive value
+     * @return The bucket of the value
+     */
+    private static int getBucket(long value)
+    {
+        if(value < SUB_COUNT)
+        {
+            return (int) value;
+        }
+        //The value is shifted so that its SUB_BITS highest bits remain, the highest one being set
+        int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return SUB_COUNT + (shift - 1) * HALF_COUNT + (int) (value >>> shift) - HALF_COUNT;
+    }
+
+    /**
+     * @param bucket A bucket
+     * @return The highest value of the bucket
+     */
+    private static long getBucketMax(int bucket)
+    {
+        if(bucket < SUB_COUNT)
+        {
+            return bucket;
+        }
+        int shift = (bucket - SUB_COUNT) / HALF_COUNT + 1;
+        long mantissa = (bucket - SUB_COUNT) % HALF_COUNT + HALF_COUNT;
+        return ((mantissa + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,292 @@
+package ClusteringEvaluator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+
+/**
+ * Approximate search structure over the FSD cluster seeds, using random hyperplanes locality-sensitive hashing
+ * (Petrovic, Osborne and Lavrenko, Streaming First Story Detection with application to Twitter, 2010)
+ *
+ * Each table hashes a vector into a bucket using the signs of its projections on a few random hyperplanes :
+ * two vectors fall in the same bucket with a probability growing with their cosine similarity.
+ * A tweet is only compared with the seeds sharing a bucket with it in at least one table,
+ * and each bucket only keeps its most recent seeds, so that the cost of a search is bounded
+ * by tablesNumber * bucketSize whatever the number of seeds.
+ *
+ * The hyperplanes are never stored : the component of a hyperplane for a term is +1 or -1,
+ * derived from a hash of the random seed, the table number and the term ID.
+ *
+ * A removed seed is only marked as such, and the index is rebuilt once half of its seeds are removed.
+ */
+public class LSHSeedIndex implements SeedIndex
+{
+    /** Initial capacity of the seeds arrays */
+    private static final int INITIAL_CAPACITY = 64;
+    /** Minimum number of removed seeds before rebuilding the index */
+    private static final int MIN_COMPACTION_SIZE = 64;
+
+    /** Number of hash tables */
+    private final int tablesNumber;
+    /** Number of hyperplanes (bits of a bucket key) per table */
+    private final int bitsNumber;
+    /** Maximum number of seeds kept in a bucket */
+    private final int bucketSize;
+    /** Random seed of the hyperplanes */
+    private final long randomSeed;
+    /** Projections of the vector being hashed on the hyperplanes of a table */
+    private final double[] projections;
+
+    /** For each table, the buckets of the seeds by key */
+    private final List<HashMap<Integer, Bucket>> tables;
+
+    /** Cluster ID of each seed, in creation order */
+    private int[] clusterIds = new int[INITIAL_CAPACITY];
+    /** Sparse vector of each seed, aligned with clusterIds (null once removed) */
+    private SparseVector[] vectors = new SparseVector[INITIAL_CAPACITY];
+    /** Number of seeds, removed seeds included */
+    private int size = 0;
+    /** Number of removed seeds */
+    private int removedNumber = 0;
+
+    /** Search number during which each seed has last been compared */
+    private int[] comparedStamps = new int[INITIAL_CAPACITY];
+    /** Current search number */
+    private int stamp = 0;
+    /** Number of seeds compared during the last search */
+    private int lastCandidatesNumber = 0;
+
+
+    /**
+     * Builds an empty LSH seed index
+     * @param tablesNumber The number of hash tables : more tables increase the recall
+     * @param bitsNumber The number of hyperplanes per table (at most 31) : more bits decrease the bucket sizes
+     * @param bucketSize The maximum number of seeds kept in a bucket, the oldest ones being dropped
+     * @param randomSeed The random seed of the hyperplanes
+     */
+    public LSHSeedIndex(int tablesNumber, int bitsNumber, int bucketSize, long randomSeed)
+    {
+        if(tablesNumber < 1 || bitsNumber < 1 || bitsNumber > 31 || bucketSize < 1)
+        {
+            throw new IllegalArgumentException("Invalid LSH parameters");
+        }
+        this.tablesNumber = tablesNumber;
+        this.bitsNumber = bitsNumber;
+        this.bucketSize = bucketSize;
+        this.randomSeed = randomSeed;
+        this.projections = new double[bitsNumber];
+        this.tables = new ArrayList<HashMap<Integer, Bucket>>(tablesNumber);
+        for(int i = 0; i < tablesNumber; ++i)
+        {
+            tables.add(new HashMap<Integer, Bucket>());
+        }
+    }
+
+    @Override
+    public void add(int clusterId, SparseVector vector)
+    {
+        if(size == clusterIds.length)
+        {
+            int capacity = size * 2;
+            clusterIds = Arrays.copyOf(clusterIds, capacity);
+            vectors = Arrays.copyOf(vectors, capacity);
+            comparedStamps = Arrays.copyOf(comparedStamps, capacity);
+        }
+        clusterIds[size] = clusterId;
+        vectors[size] = vector;
+
+        for(int table = 0; table < tablesNumber; ++table)
+        {
+            Integer key = getBucketKey(vector, table);
+            Bucket bucket = tables.get(table).get(key);
+            if(bucket == null)
+            {
+                bucket = new Bucket(bucketSize);
+                tables.get(table).put(key, bucket);
+            }
+            bucket.add(size);
+        }
+        ++size;
+    }
+
+    @Override
+    public int findCluster(SparseVector vector, double threshold)
+    {
+        int bestPosition = Integer.MAX_VALUE;
+        int candidatesNumber = 0;
+        //The stamps are cleared before the search number wraps, so that a seed is never skipped as already compared
+        if(stamp == Integer.MAX_VALUE)
+        {
+            Arrays.fill(comparedStamps, 0);
+            stamp = 0;
+        }
+        ++stamp;
+
+        for(int table = 0; table < tablesNumber; ++table)
+        {
+            Bucket bucket = tables.get(table).get(getBucketKey(vector, table));
+            if(bucket == null)
+            {
+                continue;
+            }
+
+            for(int i = 0; i < bucket.size; ++i)
+            {
+                int position = bucket.positions[i];
+                if(comparedStamps[position] == stamp || position > bestPosition || vectors[position] == null)
+                {
+                    continue;
+                }
+                comparedStamps[position] = stamp;
+                ++candidatesNumber;
+                if(vector.getCosineSimilarity(vectors[position]) >= threshold)
+                {
+                    bestPosition = position;
+                }
+            }
+        }
+        lastCandidatesNumber = candidatesNumber;
+        return bestPosition == Integer.MAX_VALUE ? -1 : clusterIds[bestPosition];
+    }
+
+    @Override
+    public int getLastCandidatesNumber()
+    {
+        return lastCandidatesNumber;
+    }
+
+    @Override
+    public void remove(int clusterId)
+    {
+        int position = Arrays.binarySearch(clusterIds, 0, size, clusterId);
+        if(position < 0 || vectors[position] == null)
+        {
+            return;
+        }
+        vectors[position] = null;
+        ++removedNumber;
+
+        if(removedNumber >= MIN_COMPACTION_SIZE && removedNumber * 2 >= size)
+        {
+            compact();
+        }
+    }
+
+    /**
+     * Drops the removed seeds : the remaining seeds are renumbered and hashed again in emptied tables
+     */
+    private void compact()
+    {
+        int[] oldClusterIds = clusterIds;
+        SparseVector[] oldVectors = vectors;
+        int oldSize = size;
+
+        size = 0;
+        removedNumber = 0;
+        Arrays.fill(comparedStamps, 0);
+        stamp = 0;
+        clusterIds = new int[clusterIds.length];
+        vectors = new SparseVector[vectors.length];
+        for(int table = 0; table < tablesNumber; ++table)
+        {
+            tables.get(table).clear();
+        }
+
+        for(int i = 0; i < oldSize; ++i)
+        {
+            if(oldVectors[i] != null)
+            {
+                add(oldClusterIds[i], oldVectors[i]);
+            }
+        }
+    }
+
+    @Override
+    public int size()
+    {
+        return size - removedNumber;
+    }
+
+    /**
+     * Returns the bucket key of a vector in a table : bit b is set if the projection of the vector
+     * on the hyperplane b of the table is positive or null
+     * @param vector The sparse vector
+     * @param table The table number
+     * @return The bucket key
+     */
+    private int getBucketKey(SparseVector vector, int table)
+    {
+        int[] termIds = vector.getTermIds();
+        float[] weights = vector.getWeights();
+        Arrays.fill(projections, 0);
+
+        for(int i = 0; i < termIds.length; ++i)
+        {
+            //The bits of the hash are the signs of the term component in each hyperplane of the table
+            long signs = mix(randomSeed + table * 0x9E3779B97F4A7C15L + termIds[i]);
+            for(int bit = 0; bit < bitsNumber; ++bit)
+            {
+                if(((signs >>> bit) & 1) == 1)
+                {
+                    projections[bit] += weights[i];
+                }
+                else
+                {
+                    projections[bit] -= weights[i];
+                }
+            }
+        }
+
+        int key = 0;
+        for(int bit = 0; bit < bitsNumber; ++bit)
+        {
+            if(projections[bit] >= 0)
+            {
+                key |= 1 << bit;
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Hashes a 64 bits value into 64 well distributed bits (SplitMix64 finalizer)
+     * @param value The value to hash
+     * @return The hash
+     */
+    private static long mix(long value)
+    {
+        long z = value * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+
+    /**
+     * Bounded list of seed positions, in ascending order : when full, the oldest seed is dropped
+     */
+    private static class Bucket
+    {
+        /** Seed positions */
+        private final int[] positions;
+        /** Number of positions */
+        private int size = 0;
+
+        private Bucket(int capacity)
+        {
+            positions = new int[capacity];
+        }
+
+        private void add(int position)
+        {
+            if(size == positions.length)
+            {
+                System.arraycopy(positions, 1, positions, 0, size - 1);
+                --size;
+            }
+            positions[size++] = position;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package ClusteringEvaluator;
+
+import java.util.Arrays;
+
+
+/**
+ * Hash map keyed by primitive longs, used for the maps keyed by tweet ID
+ * The entries are stored in two dense arrays in insertion order, and an open addressing table
+ * (linear probing) holds the position of each entry : there is no boxed key and no entry object,
+ * and an iteration by position follows the insertion order.
+ * The entries cannot be removed. An instance is not thread safe.
+ */
+public class LongHashMap<V>
+{
+    /** Initial capacity of the entries arrays */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** Key of each entry, in insertion order */
+    private long[] keys = new long[INITIAL_CAPACITY];
+    /** Value of each entry, aligned with keys */
+    private Object[] values = new Object[INITIAL_CAPACITY];
+    /** Number of entries */
+    private int size = 0;
+
+    /** Hash table : position + 1 of the entry in each slot, 0 for an empty slot. Its length is a power of 2 */
+    private int[] slots = new int[INITIAL_CAPACITY * 2];
+
+
+    /**
+     * Associates a value with a key, replacing the previous value of this key
+     * @param key The key
+     * @param value The value
+     * @return The previous value, or null if the key was absent
+     */
+    public V put(long key, V value)
+    {
+        int slot = findSlot(key);
+        if(slots[slot] != 0)
+        {
+            V previous = getValue(slots[slot] - 1);
+            values[slots[slot] - 1] = value;
+            return previous;
+        }
+
+        if(size == keys.length)
+        {
+            keys = Arrays.copyOf(keys, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        keys[size] = key;
+        values[size] = value;
+        slots[slot] = ++size;
+
+        //Keeping the table at most half full, so that the probe sequences stay short
+        if(size * 2 > slots.length)
+        {
+            rehash(slots.length * 2);
+        }
+        return null;
+    }
+
+    /**
+     * @param key The key
+     * @return The value of the key, or null if the key is absent
+     */
+    public V get(long key)
+    {
+        int position = slots[findSlot(key)];
+        return position == 0 ? null : getValue(position - 1);
+    }
+
+    /**
+     * @param key The key
+     * @return True if the map contains the key
+     */
+    public boolean containsKey(long key)
+    {
+        return slots[findSlot(key)] != 0;
+    }
+
+    /**
+     * @return The number of entries
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @param position An entry position, from 0 to size() - 1 in insertion order
+     * @return The key of the entry
+     */
+    public long getKey(int position)
+    {
+        return keys[position];
+    }
+
+    /**
+     * @param position An entry position, from 0 to size() - 1 in insertion order
+     * @return The value of the entry
+     */
+    @SuppressWarnings("unchecked")
+    public V getValue(int position)
+    {
+        return (V) values[position];
+    }
+
+    /**
+     * @return A copy of the keys, in insertion order
+     */
+    public long[] keys()
+    {
+        return Arrays.copyOf(keys, size);
+    }
+
+    /**
+     * Returns the slot of a key : the slot holding it, or the empty slot where it would be inserted
+     * @param key The key
+     * @return The slot
+     */
+    private int findSlot(long key)
+    {
+        int mask = slots.length - 1;
+        int slot = hash(key) & mask;
+        while(slots[slot] != 0 && keys[slots[slot] - 1] != key)
+        {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Rebuilds the hash table with a new length
+     * @param length The new length, a power of 2
+     */
+    private void rehash(int length)
+    {
+        slots = new int[length];
+        int mask = length - 1;
+        for(int position = 0; position < size; ++position)
+        {
+            int slot = hash(keys[position]) & mask;
+            while(slots[slot] != 0)
+            {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = position + 1;
+        }
+    }
+
+    /**
+     * Spreads the bits of a key, the low bits of the tweet IDs being poorly distributed
+     * @param key The key
+     * @return The hash of the key
+     */
+    private static int hash(long key)
+    {
+        int hash = (int) (key ^ (key >>> 32)) * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,72 @@
+package ClusteringEvaluator;
+
+import java.util.Arrays;
+
+
+/**
+ * Growable array of primitive longs, used to collect the tweet IDs of a cluster
+ * An instance is not thread safe.
+ */
+public class LongList
+{
+    /** Initial capacity of the array */
+    private static final int INITIAL_CAPACITY = 8;
+
+    /** Values, the ones beyond size being unused */
+    private long[] values = new long[INITIAL_CAPACITY];
+    /** Number of values */
+    private int size = 0;
+
+
+    /**
+     * Adds a value at the end of the list
+     * @param value The value
+     */
+    public void add(long value)
+    {
+        if(size == values.length)
+        {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+    }
+
+    /**
+     * @param index The index, from 0 to size() - 1
+     * @return The value at this index
+     */
+    public long get(int index)
+    {
+        if(index >= size)
+        {
+            throw new IndexOutOfBoundsException("Index : " + index + ", size : " + size);
+        }
+        return values[index];
+    }
+
+    /**
+     * @return The number of values
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return A copy of the values, in insertion order
+     */
+    public long[] toArray()
+    {
+        return Arrays.copyOf(values, size);
+    }
+
+    /**
+     * @return A copy of the values, in ascending order
+     */
+    public long[] toSortedArray()
+    {
+        long[] array = toArray();
+        Arrays.sort(array);
+        return array;
+    }
+}
@@ -0,0 +1,380 @@
+package ClusteringEvaluator;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+
+/**
+ * Process-wide metrics of the clustering stages : counters, gauges, stage timings and histograms
+ * A stage "name" is timed in the counter "name.nanos" and counts its tweets in "name.tweets",
+ * from which its throughput "name.tweetsPerSecond" is derived. The heap and the garbage collections
+ * are read when a snapshot is taken.
+ *
+ * The snapshot is exported as the attributes of the MBean "ClusteringEvaluator:type=Metrics" (e.g. in jconsole),
+ * and as a periodic log of JSON lines, one snapshot per line. An instance is thread safe.
+ */
+public class Metrics implements DynamicMBean
+{
+    /** Name of the MBean */
+    public static final String OBJECT_NAME = "ClusteringEvaluator:type=Metrics";
+    /** Percentiles of the histograms in the snapshots */
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+    private static final String[] PERCENTILES_NAMES = {"p50", "p90", "p99", "p999"};
+
+    /** Metrics of the process */
+    private static final Metrics INSTANCE = new Metrics();
+
+    /** Counters and gauges, by name */
+    private final ConcurrentHashMap<String, AtomicLong> counters = new ConcurrentHashMap<String, AtomicLong>();
+    /** Histograms, by name */
+    private final ConcurrentHashMap<String, Histogram> histograms = new ConcurrentHashMap<String, Histogram>();
+    /** Creation time, in milliseconds */
+    private final long startTime = System.currentTimeMillis();
+    /** Periodic log writer, null if the log is not started */
+    private ScheduledExecutorService logExecutor;
+    /** Log file writer */
+    private FileWriter logWriter;
+
+
+    /**
+     * @return The metrics of the process
+     */
+    public static Metrics get()
+    {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns a counter, created at 0 if it does not exist yet
+     * The counter can be kept by a hot loop, so that the name is only looked up once
+     * @param name The counter name
+     * @return The counter
+     */
+    public AtomicLong getCounter(String name)
+    {
+        AtomicLong counter = counters.get(name);
+        if(counter == null)
+        {
+            AtomicLong newCounter = new AtomicLong();
+            counter = counters.putIfAbsent(name, newCounter);
+            if(counter == null)
+            {
+                counter = newCounter;
+            }
+        }
+        return counter;
+    }
+
+    /**
+     * Returns a histogram, created empty if it does not exist yet
+     * @param name The histogram name
+     * @return The histogram
+     */
+    public Histogram getHistogram(String name)
+    {
+        Histogram histogram = histograms.get(name);
+        if(histogram == null)
+        {
+            Histogram newHistogram = new Histogram();
+            histogram = histograms.putIfAbsent(name, newHistogram);
+            if(histogram == null)
+            {
+                histogram = newHistogram;
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * Adds the duration of a stage run
+     * @param stage The stage name
+     * @param startNanos The System.nanoTime() of the start of the run
+     */
+    public void addStageTime(String stage, long startNanos)
+    {
+        getCounter(stage + ".nanos").addAndGet(System.nanoTime() - startNanos);
+        getCounter(stage + ".runs").incrementAndGet();
+    }
+
+    /**
+     * Sets a gauge, e.g. the current number of seeds
+     * @param name The gauge name
+     * @param value The value
+     */
+    public void setGauge(String name, long value)
+    {
+        getCounter(name).set(value);
+    }
+
+    /**
+     * Returns every metric, derived ones included
+     * @return The metrics, by name : the integers are Long, the ratios Double
+     */
+    public TreeMap<String, Number> getSnapshot()
+    {
+        TreeMap<String, Number> snapshot = new TreeMap<String, Number>();
+        for(Map.Entry<String, AtomicLong> counter : counters.entrySet())
+        {
+            snapshot.put(counter.getKey(), counter.getValue().get());
+        }
+
+        //Derived metrics of the stages
+        for(Map.Entry<String, AtomicLong> counter : counters.entrySet())
+        {
+            String name = counter.getKey();
+            if(name.endsWith(".nanos"))
+            {
+                String stage = name.substring(0, name.length() - ".nanos".length());
+                long nanos = counter.getValue().get();
+                snapshot.put(stage + ".ms", nanos / 1000000);
+                AtomicLong tweets = counters.get(stage + ".tweets");
+                if(tweets != null && nanos > 0)
+                {
+                    snapshot.put(stage + ".tweetsPerSecond", tweets.get() * 1e9 / nanos);
+                }
+            }
+            else if(name.endsWith(".comparisons"))
+            {
+                String stage = name.substring(0, name.length() - ".comparisons".length());
+                AtomicLong tweets = counters.get(stage + ".tweets");
+                if(tweets != null && tweets.get() > 0)
+                {
+                    snapshot.put(stage + ".comparisonsPerTweet", counter.getValue().get() / (double) tweets.get());
+                }
+            }
+        }
+
+        for(Map.Entry<String, Histogram> entry : histograms.entrySet())
+        {
+            String name = entry.getKey();
+            Histogram histogram = entry.getValue();
+            snapshot.put(name + ".count", histogram.getCount());
+            snapshot.put(name + ".mean", histogram.getMean());
+            snapshot.put(name + ".max", histogram.getMax());
+            for(int i = 0; i < PERCENTILES.length; ++i)
+            {
+                snapshot.put(name + "." + PERCENTILES_NAMES[i], histogram.getPercentile(PERCENTILES[i]));
+            }
+        }
+
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        snapshot.put("heap.used", heap.getUsed());
+        snapshot.put("heap.committed", heap.getCommitted());
+        snapshot.put("heap.max", heap.getMax());
+        long gcCount = 0, gcTime = 0;
+        for(GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans())
+        {
+            gcCount += Math.max(collector.getCollectionCount(), 0);
+            gcTime += Math.max(collector.getCollectionTime(), 0);
+        }
+        snapshot.put("gc.count", gcCount);
+        snapshot.put("gc.ms", gcTime);
+        snapshot.put("uptime.ms", System.currentTimeMillis() - startTime);
+        return snapshot;
+    }
+
+    /**
+     * @return The snapshot as a single JSON object, with a timestamp (milliseconds since the epoch)
+     */
+    public String getSnapshotLine()
+    {
+        StringBuilder line = new StringBuilder();
+        line.append("{\"timestamp\":").append(System.currentTimeMillis());
+        for(Map.Entry<String, Number> metric : getSnapshot().entrySet())
+        {
+            line.append(",\"").append(metric.getKey()).append("\":").append(metric.getValue());
+        }
+        return line.append("}").toString();
+    }
+
+    /**
+     * Registers the metrics in the platform MBean server, if they are not registered yet
+     */
+    public synchronized void register()
+    {
+        try
+        {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if(!server.isRegistered(name))
+            {
+                server.registerMBean(this, name);
+            }
+        }
+        catch(JMException ex)
+        {
+            Logger.getLogger(Metrics.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+
+    /**
+     * Starts writing a snapshot line in a file at a fixed period, and a last one when the process exits
+     * @param filePath The log file path, appended to
+     * @param periodMillis The period, in milliseconds
+     * @throws IOException
+     */
+    public synchronized void startLog(String filePath, long periodMillis) throws IOException
+    {
+        if(logExecutor != null)
+        {
+            return;
+        }
+        logWriter = new FileWriter(filePath, true);
+        logExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(Runnable runnable)
+            {
+                Thread thread = new Thread(runnable, "metrics-log");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        logExecutor.scheduleAtFixedRate(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                writeLogLine();
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                stopLog();
+            }
+        }));
+    }
+
+    /**
+     * Writes a last snapshot line and stops the periodic log
+     */
+    public synchronized void stopLog()
+    {
+        if(logExecutor == null)
+        {
+            return;
+        }
+        logExecutor.shutdownNow();
+        logExecutor = null;
+        writeLogLine();
+        try
+        {
+            logWriter.close();
+            logWriter = null;
+        }
+        catch(IOException ex)
+        {
+            Logger.getLogger(Metrics.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+
+    /**
+     * Writes a snapshot line in the log file
+     */
+    private synchronized void writeLogLine()
+    {
+        if(logWriter == null)
+        {
+            return;
+        }
+        try
+        {
+            logWriter.append(getSnapshotLine());
+            logWriter.append("\n");
+            logWriter.flush();
+        }
+        catch(IOException ex)
+        {
+            Logger.getLogger(Metrics.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException
+    {
+        Number value = getSnapshot().get(attribute);
+        if(value == null)
+        {
+            throw new AttributeNotFoundException(attribute);
+        }
+        return value;
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes)
+    {
+        TreeMap<String, Number> snapshot = getSnapshot();
+        AttributeList list = new AttributeList();
+        for(String attribute : attributes)
+        {
+            if(snapshot.containsKey(attribute))
+            {
+                list.add(new Attribute(attribute, snapshot.get(attribute)));
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException
+    {
+        throw new AttributeNotFoundException("The metrics are read only : " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes)
+    {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException
+    {
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    /**
+     * The attributes are the metrics of the current snapshot, so that the new metrics appear once the MBean is read again
+     */
+    @Override
+    public MBeanInfo getMBeanInfo()
+    {
+        List<MBeanAttributeInfo> attributes = new ArrayList<MBeanAttributeInfo>();
+        for(Map.Entry<String, Number> metric : getSnapshot().entrySet())
+        {
+            attributes.add(new MBeanAttributeInfo(metric.getKey(), metric.getValue().getClass().getName(), metric.getKey(), true, false, false));
+        }
+        return new MBeanInfo(Metrics.class.getName(), "Metrics of the clustering stages",
+                attributes.toArray(new MBeanAttributeInfo[attributes.size()]), null, new MBeanOperationInfo[0], null);
+    }
+}
@@ -0,0 +1,40 @@
+package ClusteringEvaluator;
+
+
+/**
+ * Search structure over the FSD cluster seeds, used to find the cluster of an incoming tweet
+ */
+public interface SeedIndex
+{
+    /**
+     * Registers the seed of a new cluster
+     * @param clusterId The new cluster ID, greater than every cluster ID already stored
+     * @param vector The sparse vector of the seed
+     */
+    void add(int clusterId, SparseVector vector);
+
+    /**
+     * Returns the cluster of the first seed (in cluster ID order) whose cosine similarity
+     * with the given vector is superior or equal to the threshold
+     * @param vector The sparse vector of the tweet to cluster
+     * @param threshold The cosine similarity threshold
+     * @return The cluster ID, or -1 if no seed is similar enough
+     */
+    int findCluster(SparseVector vector, double threshold);
+
+    /**
+     * Removes the seed of a cluster, which will not be returned by any further search
+     * @param clusterId The cluster ID
+     */
+    void remove(int clusterId);
+
+    /**
+     * @return The number of seeds compared with the tweet of the last findCluster call
+     */
+    int getLastCandidatesNumber();
+
+    /**
+     * @return The number of seeds
+     */
+    int size();
+}
@@ -0,0 +1,257 @@
+package ClusteringEvaluator;
+
+import java.util.Arrays;
+
+
+/**
+ * Store of the FSD cluster seeds
+ * Each seed is vectorized and normalized once when its cluster is created,
+ * so that comparing a tweet with the seeds only costs the dot products
+ *
+ * The seeds are indexed by term : for each term ID, a posting list contains the seeds holding this term
+ * and its weight. A tweet is then only compared with the seeds sharing at least one term with it,
+ * by accumulating the partial dot products along the posting lists of its terms.
+ * A seed sharing no term with a tweet has a cosine similarity of 0, so that it can never reach
+ * a positive threshold : the result is identical to a scan of every seed.
+ *
+ * A removed seed is only marked as such, and the store is compacted once half of its seeds are removed.
+ */
+public class SeedStore implements SeedIndex
+{
+    /** Initial capacity of the seeds arrays */
+    private static final int INITIAL_CAPACITY = 64;
+    /** Initial capacity of a posting list */
+    private static final int INITIAL_POSTING_CAPACITY = 4;
+    /** Minimum number of removed seeds before compacting the store */
+    private static final int MIN_COMPACTION_SIZE = 64;
+
+    /** Cluster ID of each seed, in creation order */
+    private int[] clusterIds = new int[INITIAL_CAPACITY];
+    /** Sparse vector of each seed, aligned with clusterIds (null once removed) */
+    private SparseVector[] vectors = new SparseVector[INITIAL_CAPACITY];
+    /** Number of seeds, removed seeds included */
+    private int size = 0;
+    /** Number of removed seeds */
+    private int removedNumber = 0;
+
+    /** For each term ID, the positions of the seeds containing this term, in ascending order */
+    private int[][] postingSeeds = new int[INITIAL_CAPACITY][];
+    /** For each term ID, the weight of the term in each seed of the posting list */
+    private float[][] postingWeights = new float[INITIAL_CAPACITY][];
+    /** For each term ID, the length of the posting list */
+    private int[] postingSizes = new int[INITIAL_CAPACITY];
+
+    /** Partial dot product of each seed with the tweet currently searched */
+    private double[] scores = new double[INITIAL_CAPACITY];
+    /** Search number during which each seed score has last been reset */
+    private int[] scoresStamps = new int[INITIAL_CAPACITY];
+    /** Positions of the seeds sharing at least one term with the tweet currently searched */
+    private int[] candidates = new int[INITIAL_CAPACITY];
+    /** Current search number */
+    private int stamp = 0;
+    /** Number of seeds compared during the last search */
+    private int lastCandidatesNumber = 0;
+
+
+    @Override
+    public void add(int clusterId, SparseVector vector)
+    {
+        if(size == clusterIds.length)
+        {
+            int capacity = size * 2;
+            clusterIds = Arrays.copyOf(clusterIds, capacity);
+            vectors = Arrays.copyOf(vectors, capacity);
+            scores = Arrays.copyOf(scores, capacity);
+            scoresStamps = Arrays.copyOf(scoresStamps, capacity);
+            candidates = Arrays.copyOf(candidates, capacity);
+        }
+        clusterIds[size] = clusterId;
+        vectors[size] = vector;
+
+        //Adding the seed to the posting list of each one of its terms
+        int[] termIds = vector.getTermIds();
+        float[] weights = vector.getWeights();
+        for(int i = 0; i < termIds.length; ++i)
+        {
+            addPosting(termIds[i], size, weights[i]);
+        }
+        ++size;
+    }
+
+    /**
+     * Adds a seed at the end of the posting list of a term
+     * @param termId The term ID
+     * @param position The seed position
+     * @param weight The weight of the term in the seed
+     */
+    private void addPosting(int termId, int position, float weight)
+    {
+        if(termId >= postingSizes.length)
+        {
+            int capacity = Math.max(termId + 1, postingSizes.length * 2);
+            postingSeeds = Arrays.copyOf(postingSeeds, capacity);
+            postingWeights = Arrays.copyOf(postingWeights, capacity);
+            postingSizes = Arrays.copyOf(postingSizes, capacity);
+        }
+
+        int postingSize = postingSizes[termId];
+        if(postingSize == 0 && postingSeeds[termId] == null)
+        {
+            postingSeeds[termId] = new int[INITIAL_POSTING_CAPACITY];
+            postingWeights[termId] = new float[INITIAL_POSTING_CAPACITY];
+        }
+        else if(postingSize == postingSeeds[termId].length)
+        {
+            postingSeeds[termId] = Arrays.copyOf(postingSeeds[termId], postingSize * 2);
+            postingWeights[termId] = Arrays.copyOf(postingWeights[termId], postingSize * 2);
+        }
+        postingSeeds[termId][postingSize] = position;
+        postingWeights[termId][postingSize] = weight;
+        postingSizes[termId] = postingSize + 1;
+    }
+
+    @Override
+    public int findCluster(SparseVector vector, double threshold)
+    {
+        //A seed without any common term can only be accepted by a threshold which is not positive
+        if(threshold <= 0)
+        {
+            return scanCluster(vector, threshold);
+        }
+
+        int candidatesNumber = accumulateScores(vector);
+        lastCandidatesNumber = candidatesNumber;
+        int bestPosition = Integer.MAX_VALUE;
+        double norm = vector.getNorm();
+
+        for(int i = 0; i < candidatesNumber; ++i)
+        {
+            int position = candidates[i];
+            if(position < bestPosition && vectors[position] != null && scores[position] / (norm * vectors[position].getNorm()) >= threshold)
+            {
+                bestPosition = position;
+            }
+        }
+        return bestPosition == Integer.MAX_VALUE ? -1 : clusterIds[bestPosition];
+    }
+
+    /**
+     * Accumulates the partial dot products between the given vector and every seed sharing a term with it
+     * The terms are browsed in ascending order, so that each score is summed in the same order as SparseVector.dot
+     * @param vector The sparse vector of the tweet
+     * @return The number of candidate seeds, stored at the beginning of the candidates array
+     */
+    private int accumulateScores(SparseVector vector)
+    {
+        int[] termIds = vector.getTermIds();
+        float[] weights = vector.getWeights();
+        int candidatesNumber = 0;
+        //The stamps are cleared before the search number wraps, so that a stale score is never taken for a current one
+        if(stamp == Integer.MAX_VALUE)
+        {
+            Arrays.fill(scoresStamps, 0);
+            stamp = 0;
+        }
+        ++stamp;
+
+        for(int i = 0; i < termIds.length; ++i)
+        {
+            int termId = termIds[i];
+            if(termId >= postingSizes.length)
+            {
+                continue;
+            }
+            int[] seeds = postingSeeds[termId];
+            float[] seedsWeights = postingWeights[termId];
+            int postingSize = postingSizes[termId];
+
+            for(int j = 0; j < postingSize; ++j)
+            {
+                int position = seeds[j];
+                if(scoresStamps[position] != stamp)
+                {
+                    scoresStamps[position] = stamp;
+                    scores[position] = 0;
+                    candidates[candidatesNumber++] = position;
+                }
+                scores[position] += (double) weights[i] * seedsWeights[j];
+            }
+        }
+        return candidatesNumber;
+    }
+
+    /**
+     * Compares the given vector with every seed, in cluster ID order
+     * @param vector The sparse vector of the tweet to cluster
+     * @param threshold The cosine similarity threshold
+     * @return The cluster ID, or -1 if no seed is similar enough
+     */
+    private int scanCluster(SparseVector vector, double threshold)
+    {
+        for(int i = 0; i < size; ++i)
+        {
+            if(vectors[i] != null && vector.getCosineSimilarity(vectors[i]) >= threshold)
+            {
+                lastCandidatesNumber = i + 1;
+                return clusterIds[i];
+            }
+        }
+        lastCandidatesNumber = size;
+        return -1;
+    }
+
+    @Override
+    public int getLastCandidatesNumber()
+    {
+        return lastCandidatesNumber;
+    }
+
+    @Override
+    public void remove(int clusterId)
+    {
+        int position = Arrays.binarySearch(clusterIds, 0, size, clusterId);
+        if(position < 0 || vectors[position] == null)
+        {
+            return;
+        }
+        vectors[position] = null;
+        ++removedNumber;
+
+        if(removedNumber >= MIN_COMPACTION_SIZE && removedNumber * 2 >= size)
+        {
+            compact();
+        }
+    }
+
+    /**
+     * Drops the removed seeds : the remaining seeds are renumbered and the posting lists are rebuilt
+     */
+    private void compact()
+    {
+        int[] oldClusterIds = clusterIds;
+        SparseVector[] oldVectors = vectors;
+        int oldSize = size;
+
+        size = 0;
+        removedNumber = 0;
+        Arrays.fill(postingSizes, 0);
+        Arrays.fill(scoresStamps, 0);
+        stamp = 0;
+        clusterIds = new int[clusterIds.length];
+        vectors = new SparseVector[vectors.length];
+
+        for(int i = 0; i < oldSize; ++i)
+        {
+            if(oldVectors[i] != null)
+            {
+                add(oldClusterIds[i], oldVectors[i]);
+            }
+        }
+    }
+
+    @Override
+    public int size()
+    {
+        return size - removedNumber;
+    }
+}
@@ -0,0 +1,166 @@
+package ClusteringEvaluator;
+
+import java.util.Arrays;
+
+
+/**
+ * Sparse terms vector : only the terms present in a tweet are stored, sorted by term ID
+ * The norm is calculated once at construction, so that a cosine similarity only costs a dot product
+ * over the non-zero terms of both vectors
+ */
+public class SparseVector
+{
+    /** Sorted term IDs of the non-zero terms */
+    private final int[] termIds;
+    /** Weight of each term, aligned with termIds */
+    private final float[] weights;
+    /** Precalculated norm of the vector */
+    private final double norm;
+
+
+    /**
+     * Builds a sparse vector from term IDs already sorted in ascending order, without any duplicate
+     * @param termIds The sorted term IDs (the array is not copied)
+     * @param weights The weight of each term (the array is not copied)
+     */
+    public SparseVector(int[] termIds, float[] weights)
+    {
+        this.termIds = termIds;
+        this.weights = weights;
+        this.norm = getVectorNorm(weights);
+    }
+
+    /**
+     * Builds a sparse vector from unsorted term IDs. Duplicated term IDs are merged by summing their weights
+     * @param termIds The term IDs
+     * @param weights The weight of each term
+     * @param length The number of terms to read in both arrays
+     * @return The sparse vector
+     */
+    public static SparseVector fromUnsorted(int[] termIds, float[] weights, int length)
+    {
+        //Sorting the positions by term ID : term ID in the high bits, position in the low bits
+        long[] order = new long[length];
+        for(int i = 0; i < length; ++i)
+        {
+            order[i] = ((long) termIds[i] << 32) | i;
+        }
+        Arrays.sort(order);
+
+        int[] sortedIds = new int[length];
+        float[] sortedWeights = new float[length];
+        int size = 0;
+        for(int i = 0; i < length; ++i)
+        {
+            int termId = (int) (order[i] >>> 32);
+            float weight = weights[(int) order[i]];
+            if(size > 0 && sortedIds[size - 1] == termId)
+            {
+                sortedWeights[size - 1] += weight;
+            }
+            else
+            {
+                sortedIds[size] = termId;
+                sortedWeights[size] = weight;
+                ++size;
+            }
+        }
+
+        if(size < length)
+        {
+            sortedIds = Arrays.copyOf(sortedIds, size);
+            sortedWeights = Arrays.copyOf(sortedWeights, size);
+        }
+        return new SparseVector(sortedIds, sortedWeights);
+    }
+
+    /**
+     * Returns the dot product of this vector and another one
+     * Both term IDs arrays are sorted, so that they are merged in O(nnz1 + nnz2) without any allocation
+     * @param vector The other vector
+     * @return A . B
+     */
+    public double dot(SparseVector vector)
+    {
+        int[] ids1 = termIds, ids2 = vector.termIds;
+        float[] weights1 = weights, weights2 = vector.weights;
+        int i = 0, j = 0;
+        double crossProduct = 0;
+
+        while(i < ids1.length && j < ids2.length)
+        {
+            if(ids1[i] == ids2[j])
+            {
+                crossProduct += (double) weights1[i] * weights2[j];
+                ++i;
+                ++j;
+            }
+            else if(ids1[i] < ids2[j])
+            {
+                ++i;
+            }
+            else
+            {
+                ++j;
+            }
+        }
+        return crossProduct;
+    }
+
+    /**
+     * Returns the cosine similarity between this vector and another one
+     * @param vector The other vector
+     * @return cosine(A, B) = A . B / ( ||A|| * ||B|| )
+     */
+    public double getCosineSimilarity(SparseVector vector)
+    {
+        return dot(vector) / (norm * vector.norm);
+    }
+
+    /**
+     * Returns the norm of the given weights
+     * @param weights The non-zero weights of a vector
+     * @return sqrt(sum(weight * weight))
+     */
+    private static double getVectorNorm(float[] weights)
+    {
+        double norm = 0;
+        for(int i = 0; i < weights.length; ++i)
+        {
+            norm += (double) weights[i] * weights[i];
+        }
+        return Math.sqrt(norm);
+    }
+
+    /**
+     * @return The sorted term IDs (must not be modified)
+     */
+    public int[] getTermIds()
+    {
+        return termIds;
+    }
+
+    /**
+     * @return The weight of each term (must not be modified)
+     */
+    public float[] getWeights()
+    {
+        return weights;
+    }
+
+    /**
+     * @return The number of non-zero terms
+     */
+    public int size()
+    {
+        return termIds.length;
+    }
+
+    /**
+     * @return The precalculated norm of the vector
+     */
+    public double getNorm()
+    {
+        return norm;
+    }
+}
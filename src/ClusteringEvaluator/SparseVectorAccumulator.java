@@ -0,0 +1,84 @@
+package ClusteringEvaluator;
+
+import java.util.Arrays;
+
+
+/**
+ * Reusable dense accumulator summing sparse vectors, e.g. the tweets of a cluster into its terms vector
+ * The weights are summed in a primitive array indexed by term ID, and only the touched terms are read
+ * and reset when the sum is built, so that a sum costs the number of non-zero weights added.
+ * An instance is not thread safe.
+ */
+public class SparseVectorAccumulator
+{
+    /** Initial capacity of the buffers */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /** Sum of the weights of each term ID, 0 for the untouched terms */
+    private float[] sums = new float[INITIAL_CAPACITY];
+    /** True for each term ID added since the last build */
+    private boolean[] touched = new boolean[INITIAL_CAPACITY];
+    /** Term IDs added since the last build */
+    private int[] touchedIds = new int[INITIAL_CAPACITY];
+    /** Number of term IDs added since the last build */
+    private int touchedNumber = 0;
+
+
+    /**
+     * Adds a sparse vector to the sum
+     * @param vector The sparse vector
+     */
+    public void add(SparseVector vector)
+    {
+        int[] termIds = vector.getTermIds();
+        float[] weights = vector.getWeights();
+        for(int i = 0; i < termIds.length; ++i)
+        {
+            add(termIds[i], weights[i]);
+        }
+    }
+
+    /**
+     * Adds a term weight to the sum
+     * @param termId The term ID
+     * @param weight The weight
+     */
+    public void add(int termId, float weight)
+    {
+        if(termId >= sums.length)
+        {
+            int capacity = Math.max(termId + 1, sums.length * 2);
+            sums = Arrays.copyOf(sums, capacity);
+            touched = Arrays.copyOf(touched, capacity);
+        }
+        if(!touched[termId])
+        {
+            if(touchedNumber == touchedIds.length)
+            {
+                touchedIds = Arrays.copyOf(touchedIds, touchedNumber * 2);
+            }
+            touched[termId] = true;
+            touchedIds[touchedNumber++] = termId;
+        }
+        sums[termId] += weight;
+    }
+
+    /**
+     * Builds the sparse vector of the sum since the last build, then resets the touched terms
+     * @return The sparse vector
+     */
+    public SparseVector build()
+    {
+        int[] termIds = Arrays.copyOf(touchedIds, touchedNumber);
+        Arrays.sort(termIds);
+        float[] weights = new float[touchedNumber];
+        for(int i = 0; i < touchedNumber; ++i)
+        {
+            weights[i] = sums[termIds[i]];
+            sums[termIds[i]] = 0;
+            touched[termIds[i]] = false;
+        }
+        touchedNumber = 0;
+        return new SparseVector(termIds, weights);
+    }
+}
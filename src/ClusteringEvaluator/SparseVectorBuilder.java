@@ -0,0 +1,58 @@
+package ClusteringEvaluator;
+
+import java.util.Arrays;
+
+
+/**
+ * Reusable buffer accumulating the terms of a text before building its sparse vector
+ * An instance is not thread safe.
+ */
+public class SparseVectorBuilder
+{
+    /** Initial capacity of the buffers */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /** Term IDs added so far, duplicates included */
+    private int[] termIds = new int[INITIAL_CAPACITY];
+    /** Weights added so far */
+    private float[] weights = new float[INITIAL_CAPACITY];
+    /** Number of terms added */
+    private int size = 0;
+
+
+    /**
+     * Adds a term weight to the vector being built
+     * @param termId The term ID
+     * @param weight The weight, summed with the weights of the same term already added
+     */
+    public void add(int termId, float weight)
+    {
+        if(size == termIds.length)
+        {
+            termIds = Arrays.copyOf(termIds, size * 2);
+            weights = Arrays.copyOf(weights, size * 2);
+        }
+        termIds[size] = termId;
+        weights[size] = weight;
+        ++size;
+    }
+
+    /**
+     * Builds the sparse vector of the terms added since the last build, then empties the buffers
+     * @return The sparse vector
+     */
+    public SparseVector build()
+    {
+        SparseVector vector = SparseVector.fromUnsorted(termIds, weights, size);
+        size = 0;
+        return vector;
+    }
+
+    /**
+     * @return The number of terms added since the last build, duplicates included
+     */
+    public int size()
+    {
+        return size;
+    }
+}
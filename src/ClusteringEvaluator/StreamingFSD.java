@@ -0,0 +1,323 @@
+package ClusteringEvaluator;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedList;
+
+
+/**
+ * Incremental first story detection : tweets are fed one at a time and each one is immediately
+ * assigned to an existing cluster or detected as a new story
+ * The state is limited to what the algorithm needs : the terms IDs and the seeds search structure.
+ * The members of the clusters are not kept, each assignment being returned to the caller.
+ *
+ * A sliding window bounds the memory and the cost of a tweet on a continuous stream : the seeds older
+ * than a duration, or beyond a number of seeds, are evicted from the seeds search structure.
+ * If a cluster sink is given, the members of the active clusters are kept until their seed is evicted,
+ * then the finished cluster is given to the sink.
+ * Limitation : the window bounds the seeds, not the terms dictionary, which keeps every term met since the start.
+ * Its size grows with the vocabulary of the stream, much slower than the number of tweets, and the cost of a tweet
+ * does not depend on it, but it is not flat : forgetting the terms held by no seed of the window would need
+ * the term IDs to be recycled in the dictionary and in the seeds search structures.
+ * The terms frequencies can be weighted before the similarity (See TermWeighting), with the document
+ * frequencies of the tweets met so far, updated with each tweet before it is weighted.
+ * The tweets are expected in chronological order. An instance is not thread safe : a pipeline vectorizing the tweets
+ * in another thread uses its own TweetVectorizer, and only feeds the vectors to process (See FSDPipeline).
+ */
+public class StreamingFSD
+{
+    /** Dictionary of the terms, completed by the vectorizer */
+    private final TermDictionary dictionary;
+    /**
+     * Vectorizer of the tweets text, created by the first text given to process(long, String, long) or getSparseVector,
+     * so that an instance only fed with vectors does not build an analyzer
+     */
+    private TweetVectorizer vectorizer = null;
+    /** Seeds search structure */
+    private final SeedIndex seedIndex;
+    /** Cosine similarity threshold from which a tweet is accepted in a cluster */
+    private final double threshold;
+    /** Number of tweets between two publications of the metrics */
+    private static final int METRICS_PERIOD = 4096;
+
+    /** Next cluster ID */
+    private int nextClusterId = 1;
+    /** Weighting of the terms frequencies */
+    private final TermWeighting weighting;
+    /** Document frequencies of the tweets met so far, only updated if the weighting is not RAW */
+    private final DocumentFrequencies documentFrequencies;
+
+    /** Time window : a seed older than this duration (milliseconds) is evicted, 0 for no limit */
+    private final long windowDuration;
+    /** Count window : maximum number of seeds, the oldest ones being evicted, 0 for no limit */
+    private final int windowSeeds;
+    /** Output of the finished clusters, null if the members of the clusters are not kept */
+    private final ClusterSink sink;
+    /** Active clusters in creation order, only kept if there is a window or a sink */
+    private final LinkedList<ActiveCluster> activeClusters = new LinkedList<ActiveCluster>();
+    /** Active clusters by cluster ID, only kept if there is a sink */
+    private final HashMap<Integer, ActiveCluster> activeClustersById = new HashMap<Integer, ActiveCluster>();
+    /** Most recent timestamp met */
+    private long currentTime = Long.MIN_VALUE;
+
+    /**
+     * Metrics of the tweets processed since the last publication, added to the process metrics (See Metrics) every
+     * METRICS_PERIOD tweets and by publishMetrics, so that concurrent clusterings do not update the same counters for each tweet
+     */
+    private int tweetsNumber = 0;
+    private long comparisonsNumber = 0;
+    private long newStoriesNumber = 0;
+    /** Time of each tweet assignment, in nanoseconds */
+    private final Histogram latencyHistogram = new Histogram();
+    /** Number of seeds compared with each tweet */
+    private final Histogram candidatesHistogram = new Histogram();
+
+
+    /**
+     * @param dictionary The dictionary of the terms already known, completed with new terms
+     * @param seedIndex The empty seeds search structure
+     * @param threshold The cosine similarity threshold from which a tweet is accepted in a cluster
+     */
+    public StreamingFSD(TermDictionary dictionary, SeedIndex seedIndex, double threshold)
+    {
+        this(dictionary, seedIndex, threshold, TermWeighting.RAW, new DocumentFrequencies(), 0, 0, null);
+    }
+
+    /**
+     * @param dictionary The dictionary of the terms already known, completed with new terms
+     * @param seedIndex The empty seeds search structure
+     * @param threshold The cosine similarity threshold from which a tweet is accepted in a cluster
+     * @param weighting The weighting of the terms frequencies
+     * @param documentFrequencies The document frequencies, completed with each tweet (it can be shared with another clustering)
+     */
+    public StreamingFSD(TermDictionary dictionary, SeedIndex seedIndex, double threshold, TermWeighting weighting, DocumentFrequencies documentFrequencies)
+    {
+        this(dictionary, seedIndex, threshold, weighting, documentFrequencies, 0, 0, null);
+    }
+
+    /**
+     * @param dictionary The dictionary of the terms already known, completed with new terms
+     * @param seedIndex The empty seeds search structure
+     * @param threshold The cosine similarity threshold from which a tweet is accepted in a cluster
+     * @param weighting The weighting of the terms frequencies
+     * @param documentFrequencies The document frequencies, completed with each tweet (it can be shared with another clustering)
+     * @param windowDuration The duration (milliseconds) after which a seed is evicted, 0 for no limit
+     * @param windowSeeds The maximum number of seeds, 0 for no limit
+     * @param sink The output of the finished clusters, null to not keep the members of the clusters
+     */
+    public StreamingFSD(TermDictionary dictionary, SeedIndex seedIndex, double threshold, TermWeighting weighting, DocumentFrequencies documentFrequencies,
+            long windowDuration, int windowSeeds, ClusterSink sink)
+    {
+        this.dictionary = dictionary;
+        this.seedIndex = seedIndex;
+        this.threshold = threshold;
+        this.weighting = weighting;
+        this.documentFrequencies = documentFrequencies;
+        this.windowDuration = windowDuration;
+        this.windowSeeds = windowSeeds;
+        this.sink = sink;
+    }
+
+    /**
+     * Tokenizes a tweet, then assigns it to a cluster
+     * @param tweetId The tweet ID
+     * @param text The tweet content
+     * @param timestamp The tweet timestamp, in milliseconds
+     * @return The cluster assignment of the tweet
+     * @throws IOException
+     */
+    public FSDAssignment process(long tweetId, String text, long timestamp) throws IOException
+    {
+        return process(tweetId, getSparseVector(text), timestamp);
+    }
+
+    /**
+     * Assigns an already vectorized tweet to a cluster
+     * @param tweetId The tweet ID
+     * @param vector The terms frequency vector of the tweet, weighted here
+     * @param timestamp The tweet timestamp, in milliseconds
+     * @return The cluster assignment of the tweet
+     * @throws IOException If the sink fails to write an evicted cluster
+     */
+    public FSDAssignment process(long tweetId, SparseVector vector, long timestamp) throws IOException
+    {
+        long startTime = System.nanoTime();
+        if(weighting != TermWeighting.RAW)
+        {
+            documentFrequencies.add(vector);
+            vector = weighting.getWeightedVector(vector, documentFrequencies);
+        }
+        FSDAssignment assignment = assign(tweetId, vector, timestamp);
+
+        int candidatesNumber = seedIndex.getLastCandidatesNumber();
+        ++tweetsNumber;
+        comparisonsNumber += candidatesNumber;
+        candidatesHistogram.record(candidatesNumber);
+        if(assignment.isNewStory())
+        {
+            ++newStoriesNumber;
+        }
+        latencyHistogram.record(System.nanoTime() - startTime);
+        if(tweetsNumber == METRICS_PERIOD)
+        {
+            publishMetrics();
+        }
+        return assignment;
+    }
+
+    /**
+     * Adds the metrics of the tweets processed since the last publication to the process metrics
+     * The number of seeds is published as the gauge "fsd.seeds"
+     */
+    public void publishMetrics()
+    {
+        Metrics metrics = Metrics.get();
+        metrics.getCounter("fsd.tweets").addAndGet(tweetsNumber);
+        metrics.getCounter("fsd.comparisons").addAndGet(comparisonsNumber);
+        metrics.getCounter("fsd.newStories").addAndGet(newStoriesNumber);
+        metrics.setGauge("fsd.seeds", seedIndex.size());
+        latencyHistogram.drainTo(metrics.getHistogram("fsd.tweetLatency"));
+        candidatesHistogram.drainTo(metrics.getHistogram("fsd.candidates"));
+        tweetsNumber = 0;
+        comparisonsNumber = 0;
+        newStoriesNumber = 0;
+    }
+
+    /**
+     * Assigns a tweet to a cluster (See process)
+     * @param tweetId The tweet ID
+     * @param vector The weighted vector of the tweet
+     * @param timestamp The tweet timestamp, in milliseconds
+     * @return The cluster assignment of the tweet
+     * @throws IOException If the sink fails to write an evicted cluster
+     */
+    private FSDAssignment assign(long tweetId, SparseVector vector, long timestamp) throws IOException
+    {
+        //Evicting the seeds which left the time window
+        if(timestamp > currentTime)
+        {
+            currentTime = timestamp;
+        }
+        if(windowDuration > 0)
+        {
+            while(!activeClusters.isEmpty() && activeClusters.getFirst().seedTimestamp < currentTime - windowDuration)
+            {
+                evict(activeClusters.removeFirst());
+            }
+        }
+
+        int clusterId = seedIndex.findCluster(vector, threshold);
+        if(clusterId != -1)
+        {
+            if(sink != null)
+            {
+                activeClustersById.get(clusterId).tweetIds.add(tweetId);
+            }
+            return new FSDAssignment(tweetId, clusterId, false, timestamp);
+        }
+
+        //New story : the tweet becomes the seed of a new cluster
+        clusterId = nextClusterId++;
+        seedIndex.add(clusterId, vector);
+        if(windowDuration > 0 || windowSeeds > 0 || sink != null)
+        {
+            ActiveCluster cluster = new ActiveCluster(clusterId, tweetId, timestamp);
+            activeClusters.addLast(cluster);
+            if(sink != null)
+            {
+                cluster.tweetIds.add(tweetId);
+                activeClustersById.put(clusterId, cluster);
+            }
+        }
+
+        //Evicting the oldest seed if the count window is full
+        if(windowSeeds > 0 && activeClusters.size() > windowSeeds)
+        {
+            evict(activeClusters.removeFirst());
+        }
+        return new FSDAssignment(tweetId, clusterId, true, timestamp);
+    }
+
+    /**
+     * Removes the seed of a cluster from the seeds search structure, then gives the finished cluster to the sink
+     * @param cluster The cluster to evict
+     * @throws IOException
+     */
+    private void evict(ActiveCluster cluster) throws IOException
+    {
+        seedIndex.remove(cluster.clusterId);
+        if(sink != null)
+        {
+            activeClustersById.remove(cluster.clusterId);
+            sink.clusterClosed(cluster.clusterId, cluster.seedTweetId, cluster.tweetIds.toArray());
+        }
+    }
+
+    /**
+     * Evicts every active cluster at the end of the stream, so that the sink receives them, then publishes the metrics
+     * @throws IOException
+     */
+    public void flush() throws IOException
+    {
+        while(!activeClusters.isEmpty())
+        {
+            evict(activeClusters.removeFirst());
+        }
+        publishMetrics();
+    }
+
+    /**
+     * Tokenizes a text with the analyzer and returns its terms frequency vector
+     * The terms which have never been met are added to the terms dictionary
+     * @param text The text to tokenize
+     * @return The sparse vector of the text
+     * @throws IOException
+     */
+    public SparseVector getSparseVector(String text) throws IOException
+    {
+        if(vectorizer == null)
+        {
+            vectorizer = new TweetVectorizer(dictionary);
+        }
+        return vectorizer.getSparseVector(text);
+    }
+
+    /**
+     * @return The number of clusters created so far
+     */
+    public int getClustersNumber()
+    {
+        return nextClusterId - 1;
+    }
+
+    /**
+     * @return The number of seeds in the seeds search structure
+     */
+    public int getSeedsNumber()
+    {
+        return seedIndex.size();
+    }
+
+
+    /**
+     * Cluster whose seed is still in the window
+     */
+    private static class ActiveCluster
+    {
+        /** Cluster ID */
+        private final int clusterId;
+        /** Tweet ID of the seed */
+        private final long seedTweetId;
+        /** Timestamp of the seed, in milliseconds */
+        private final long seedTimestamp;
+        /** Members of the cluster, only kept if there is a sink */
+        private final LongList tweetIds = new LongList();
+
+        private ActiveCluster(int clusterId, long seedTweetId, long seedTimestamp)
+        {
+            this.clusterId = clusterId;
+            this.seedTweetId = seedTweetId;
+            this.seedTimestamp = seedTimestamp;
+        }
+    }
+}
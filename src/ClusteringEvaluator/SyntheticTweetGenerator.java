@@ -0,0 +1,343 @@
+package ClusteringEvaluator;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * Deterministic generator of a synthetic tweets corpus, to measure the FSD on corpora of any size
+ * The background tweets draw their words from a Zipfian vocabulary. The event tweets are planted in bursts :
+ * each event has a start time, an exponentially decreasing activity and a few keywords of its own,
+ * drawn from the less frequent words, each keyword being replaced by a background word with the noise probability.
+ * The same parameters and seed always give the same corpus.
+ *
+ * Files written in the output directory, in the formats of the resources directory :
+ * tweets.db : SQLite "tweets" table (created_at, eventindex, id, text), the IDs growing with time
+ * tweetsClustered : "eventId tweetId" line for each event tweet (See ClusteringEvaluator.importClustering)
+ * clustersThemes : "eventId#keywords" line for each event
+ */
+public class SyntheticTweetGenerator
+{
+    /** Default parameters (See main) */
+    private static final int DEFAULT_TWEETS_NUMBER = 1000000;
+    private static final int DEFAULT_EVENTS_NUMBER = 100;
+    private static final long DEFAULT_SEED = 42;
+    private static final String DEFAULT_OUTPUT_DIRECTORY = "synthetic";
+    private static final int VOCABULARY_SIZE = 50000;
+    private static final double ZIPF_EXPONENT = 1.0;
+    private static final double EVENT_SHARE = 0.3;
+    private static final double NOISE = 0.3;
+    private static final long DURATION = 30 * 24 * 3600 * 1000L;
+    private static final long BURST_DURATION = 6 * 3600 * 1000L;
+
+    /** Number of keywords of an event */
+    private static final int EVENT_KEYWORDS_NUMBER = 6;
+    /** Number of words of a tweet : from MIN_WORDS to MAX_WORDS */
+    private static final int MIN_WORDS = 6;
+    private static final int MAX_WORDS = 14;
+    /** Number of keywords of an event tweet : from MIN_EVENT_WORDS to MAX_EVENT_WORDS */
+    private static final int MIN_EVENT_WORDS = 2;
+    private static final int MAX_EVENT_WORDS = 4;
+    /** Start of the corpus : Fri Jul 01 00:00:00 +0000 2011 */
+    private static final long START_TIME = 1309478400000L;
+    /** Origin of the tweet IDs : an ID is the milliseconds since this time, shifted by 22 bits, plus a sequence number */
+    private static final long ID_EPOCH = 1288834974657L;
+    /** Letters of the synthetic words, so that no word is an English stop word */
+    private static final String CONSONANTS = "bdfgklmnprstvz";
+    private static final String VOWELS = "aeiou";
+
+    private final int tweetsNumber;
+    private final int eventsNumber;
+    private final int vocabularySize;
+    private final double eventShare;
+    private final double noise;
+    private final long duration;
+    private final long burstDuration;
+    private final Random random;
+
+    /** Cumulated probabilities of the words, by frequency rank */
+    private final double[] wordsDistribution;
+    /** Cumulated probabilities of the events, by popularity rank */
+    private final double[] eventsDistribution;
+    /** Start time of each event, in milliseconds from START_TIME */
+    private final long[] eventStarts;
+    /** Keyword ranks of each event */
+    private final int[][] eventKeywords;
+
+
+    /**
+     * @param tweetsNumber The number of tweets
+     * @param eventsNumber The number of planted events
+     * @param vocabularySize The number of distinct background words
+     * @param zipfExponent The exponent of the Zipf distribution of the words and of the events popularity
+     * @param eventShare The probability that a tweet belongs to an event
+     * @param noise The probability that a keyword of an event tweet is replaced by a background word
+     * @param duration The time span of the corpus, in milliseconds
+     * @param burstDuration The mean delay between the start of an event and one of its tweets, in milliseconds
+     * @param seed The seed of the random numbers
+     */
+    public SyntheticTweetGenerator(int tweetsNumber, int eventsNumber, int vocabularySize, double zipfExponent,
+            double eventShare, double noise, long duration, long burstDuration, long seed)
+    {
+        if(vocabularySize < 10 * EVENT_KEYWORDS_NUMBER)
+        {
+            throw new IllegalArgumentException("Vocabulary too small : " + vocabularySize);
+        }
+        //The event index and the time of a tweet are packed in a long (See getTweetsSchedule)
+        if(eventsNumber >= 1 << 24 || duration >= 1L << 39)
+        {
+            throw new IllegalArgumentException("Too many events or too long duration");
+        }
+        this.tweetsNumber = tweetsNumber;
+        this.eventsNumber = eventsNumber;
+        this.vocabularySize = vocabularySize;
+        this.eventShare = eventsNumber > 0 ? eventShare : 0;
+        this.noise = noise;
+        this.duration = duration;
+        this.burstDuration = burstDuration;
+        this.random = new Random(seed);
+
+        wordsDistribution = getZipfDistribution(vocabularySize, zipfExponent);
+        eventsDistribution = getZipfDistribution(Math.max(eventsNumber, 1), zipfExponent);
+        eventStarts = new long[eventsNumber];
+        eventKeywords = new int[eventsNumber][EVENT_KEYWORDS_NUMBER];
+        for(int event = 0; event < eventsNumber; ++event)
+        {
+            eventStarts[event] = (long) (random.nextDouble() * duration);
+            //Keywords among the 90% less frequent words, so that they identify the event
+            for(int i = 0; i < EVENT_KEYWORDS_NUMBER; ++i)
+            {
+                eventKeywords[event][i] = vocabularySize / 10 + random.nextInt(vocabularySize - vocabularySize / 10);
+            }
+        }
+    }
+
+    /**
+     * Generates a synthetic corpus
+     * @param args Optional : tweets number, events number, seed, output directory
+     *             (default : 1000000 tweets, 100 events, seed 42, "synthetic" directory)
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException
+    {
+        int tweetsNumber = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_TWEETS_NUMBER;
+        int eventsNumber = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_EVENTS_NUMBER;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_SEED;
+        String outputDirectory = args.length > 3 ? args[3] : DEFAULT_OUTPUT_DIRECTORY;
+
+        new SyntheticTweetGenerator(tweetsNumber, eventsNumber, VOCABULARY_SIZE, ZIPF_EXPONENT,
+                EVENT_SHARE, NOISE, DURATION, BURST_DURATION, seed).generate(outputDirectory);
+    }
+
+    /**
+     * Writes the tweets database, the real clustering and the events themes in a directory
+     * @param outputDirectory The output directory, created if needed. An existing database is replaced.
+     * @throws IOException
+     */
+    public void generate(String outputDirectory) throws IOException
+    {
+        new File(outputDirectory).mkdirs();
+        File databaseFile = new File(outputDirectory + "\\tweets.db");
+        if(databaseFile.exists() && !databaseFile.delete())
+        {
+            throw new IOException("Cannot replace " + databaseFile);
+        }
+
+        System.out.println("Generating synthetic tweets...");
+        long[] tweets = getTweetsSchedule();
+
+        FileWriter clusteringWriter = new FileWriter(outputDirectory + "\\tweetsClustered");
+        try
+        {
+            DBManager.ConnectToDB("jdbc:sqlite:" + databaseFile.getPath(), 30);
+            Statement statement = DBManager.connection.createStatement();
+            statement.executeUpdate("CREATE TABLE tweets (created_at TEXT, eventindex INT, id INT PRIMARY KEY, text TEXT)");
+            statement.close();
+
+            SimpleDateFormat dateFormat = new SimpleDateFormat(FrequencyMatrixBuilder.CREATED_AT_FORMAT, Locale.ENGLISH);
+            dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+            DBBatchWriter writer = DBManager.createBatchWriter(DBManager.connection, DBBatchWriter.DEFAULT_BATCH_SIZE);
+            TreeMap<String, Object> row = new TreeMap<String, Object>();
+            StringBuilder text = new StringBuilder();
+            long previousTime = -1, sequence = 0;
+
+            for(int i = 0; i < tweets.length; ++i)
+            {
+                long time = START_TIME + (tweets[i] >>> 24);
+                int event = (int) (tweets[i] & 0xFFFFFF) - 1;
+                sequence = time == previousTime ? sequence + 1 : 0;
+                previousTime = time;
+                long id = ((time - ID_EPOCH) << 22) | sequence;
+
+                row.put(FrequencyMatrixBuilder.CREATED_AT, dateFormat.format(new Date(time)));
+                row.put("eventindex", event == -1 ? null : event + 1);
+                row.put(FrequencyMatrixBuilder.ID, id);
+                row.put(FrequencyMatrixBuilder.TEXT, getText(event, text));
+                writer.insertInto("tweets", row);
+                if(event != -1)
+                {
+                    clusteringWriter.append(Integer.toString(event + 1));
+                    clusteringWriter.append(" ");
+                    clusteringWriter.append(Long.toString(id));
+                    clusteringWriter.append("\n");
+                }
+
+                //Displaying progression
+                if((i + 1) % 100000 == 0)
+                {
+                    System.out.println((i + 1) + " tweets generated");
+                }
+            }
+            writer.close();
+        }
+        catch(ClassNotFoundException ex)
+        {
+            Logger.getLogger(SyntheticTweetGenerator.class.getName()).log(Level.SEVERE, null, ex);
+        }
+        catch(SQLException ex)
+        {
+            Logger.getLogger(SyntheticTweetGenerator.class.getName()).log(Level.SEVERE, null, ex);
+        }
+        finally
+        {
+            clusteringWriter.close();
+        }
+
+        FileWriter themesWriter = new FileWriter(outputDirectory + "\\clustersThemes");
+        for(int event = 0; event < eventsNumber; ++event)
+        {
+            themesWriter.append(Integer.toString(event + 1));
+            themesWriter.append("#");
+            for(int i = 0; i < EVENT_KEYWORDS_NUMBER; ++i)
+            {
+                themesWriter.append(i == 0 ? "" : " ");
+                themesWriter.append(getWord(eventKeywords[event][i]));
+            }
+            themesWriter.append("\n");
+        }
+        themesWriter.close();
+        System.out.println("Done");
+    }
+
+    /**
+     * Draws the time and the event of every tweet, in chronological order
+     * @return For each tweet, its time (milliseconds from START_TIME) shifted by 24 bits,
+     *         plus its event index + 1 (0 for a background tweet)
+     */
+    private long[] getTweetsSchedule()
+    {
+        long[] tweets = new long[tweetsNumber];
+        for(int i = 0; i < tweetsNumber; ++i)
+        {
+            long time;
+            int event = -1;
+            if(random.nextDouble() < eventShare)
+            {
+                event = sample(eventsDistribution);
+                //Bursty activity : most tweets of an event come right after its start
+                long delay = (long) (-Math.log(1 - random.nextDouble()) * burstDuration);
+                time = Math.min(eventStarts[event] + delay, duration - 1);
+            }
+            else
+            {
+                time = (long) (random.nextDouble() * duration);
+            }
+            tweets[i] = (time << 24) | (event + 1);
+        }
+        Arrays.sort(tweets);
+        return tweets;
+    }
+
+    /**
+     * Draws the text of a tweet
+     * @param event The event index, -1 for a background tweet
+     * @param text The buffer of the text, reused between tweets
+     * @return The text
+     */
+    private String getText(int event, StringBuilder text)
+    {
+        text.setLength(0);
+        int wordsNumber = MIN_WORDS + random.nextInt(MAX_WORDS - MIN_WORDS + 1);
+        int eventWordsNumber = event == -1 ? 0 : MIN_EVENT_WORDS + random.nextInt(MAX_EVENT_WORDS - MIN_EVENT_WORDS + 1);
+
+        for(int i = 0; i < wordsNumber; ++i)
+        {
+            int rank;
+            if(i < eventWordsNumber && random.nextDouble() >= noise)
+            {
+                rank = eventKeywords[event][random.nextInt(EVENT_KEYWORDS_NUMBER)];
+            }
+            else
+            {
+                rank = sample(wordsDistribution);
+            }
+            if(i > 0)
+            {
+                text.append(' ');
+            }
+            text.append(getWord(rank));
+        }
+        return text.toString();
+    }
+
+    /**
+     * @param size The number of ranks
+     * @param exponent The exponent of the distribution
+     * @return The cumulated probabilities of the ranks, the probability of the rank r being proportional to 1 / (r + 1)^exponent
+     */
+    private static double[] getZipfDistribution(int size, double exponent)
+    {
+        double[] distribution = new double[size];
+        double sum = 0;
+        for(int rank = 0; rank < size; ++rank)
+        {
+            sum += 1 / Math.pow(rank + 1, exponent);
+            distribution[rank] = sum;
+        }
+        for(int rank = 0; rank < size; ++rank)
+        {
+            distribution[rank] /= sum;
+        }
+        return distribution;
+    }
+
+    /**
+     * @param distribution Cumulated probabilities
+     * @return A rank drawn from the distribution
+     */
+    private int sample(double[] distribution)
+    {
+        int rank = Arrays.binarySearch(distribution, random.nextDouble());
+        rank = rank < 0 ? -rank - 1 : rank;
+        return Math.min(rank, distribution.length - 1);
+    }
+
+    /**
+     * @param rank A word rank
+     * @return The synthetic word of the rank : at least two consonant-vowel syllables, distinct for each rank
+     */
+    private static String getWord(int rank)
+    {
+        int syllables = CONSONANTS.length() * VOWELS.length();
+        StringBuilder word = new StringBuilder();
+        for(long n = rank + syllables; n > 0; n /= syllables)
+        {
+            int syllable = (int) (n % syllables);
+            word.append(CONSONANTS.charAt(syllable / VOWELS.length()));
+            word.append(VOWELS.charAt(syllable % VOWELS.length()));
+        }
+        return word.toString();
+    }
+}
@@ -0,0 +1,65 @@
+package ClusteringEvaluator;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+
+/**
+ * Dictionary of every term met in the pipeline : each term is interned once and given a stable ID
+ * The IDs are assigned in order of first appearance, from 0 to size() - 1, so that the layout of the vectors
+ * only depends on the order of the texts, not on the iteration order of a hash set
+ */
+public class TermDictionary
+{
+    /** ID of each term */
+    private final HashMap<String, Integer> ids = new HashMap<String, Integer>();
+    /** Term of each ID */
+    private final List<String> terms = new ArrayList<String>();
+
+
+    /**
+     * Returns the ID of a term, adding the term to the dictionary if it has never been met
+     * @param term The term
+     * @return The term ID
+     */
+    public int add(String term)
+    {
+        Integer id = ids.get(term);
+        if(id == null)
+        {
+            id = terms.size();
+            ids.put(term, id);
+            terms.add(term);
+        }
+        return id;
+    }
+
+    /**
+     * Returns the ID of a term
+     * @param term The term
+     * @return The term ID, or -1 if the term has never been met
+     */
+    public int getId(String term)
+    {
+        Integer id = ids.get(term);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * @param id A term ID
+     * @return The term
+     */
+    public String getTerm(int id)
+    {
+        return terms.get(id);
+    }
+
+    /**
+     * @return The number of terms
+     */
+    public int size()
+    {
+        return terms.size();
+    }
+}
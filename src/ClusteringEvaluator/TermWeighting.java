@@ -0,0 +1,126 @@
+package ClusteringEvaluator;
+
+
+/**
+ * Weighting of the terms of a tweet vector before the cosine similarity
+ * The raw term frequencies let the frequent terms ("rt", "lol", "the") dominate the similarity, so that
+ * unrelated tweets are merged and every seed holding them becomes a candidate. The inverse document
+ * frequency weightings lower these terms, the document frequencies being those of the tweets met so far
+ * (See DocumentFrequencies).
+ *
+ * A weighted vector is a new SparseVector, whose weighted norm is calculated once at construction.
+ */
+public enum TermWeighting
+{
+    /** Term frequency : the vector is kept as it is */
+    RAW
+    {
+        @Override
+        protected double getWeight(float frequency, float length, double idf, double averageLength)
+        {
+            return frequency;
+        }
+
+        @Override
+        public SparseVector getWeightedVector(SparseVector vector, DocumentFrequencies frequencies)
+        {
+            return vector;
+        }
+    },
+    /** 1 + log(tf) : a repeated term counts less than several distinct terms */
+    LOG_TF
+    {
+        @Override
+        protected double getWeight(float frequency, float length, double idf, double averageLength)
+        {
+            return 1 + Math.log(frequency);
+        }
+    },
+    /** tf * idf, with idf = 1 + log((N + 1) / (df + 1)) so that a term present in every tweet keeps a positive weight */
+    TF_IDF
+    {
+        @Override
+        protected double getWeight(float frequency, float length, double idf, double averageLength)
+        {
+            return frequency * idf;
+        }
+
+        @Override
+        protected double getIdf(int documentFrequency, long documentsNumber)
+        {
+            return 1 + Math.log((documentsNumber + 1.0) / (documentFrequency + 1.0));
+        }
+    },
+    /**
+     * Okapi BM25 : the term frequency saturates (BM25_K1) and is normalized by the tweet length (BM25_B),
+     * with idf = log(1 + (N - df + 0.5) / (df + 0.5)) as in Lucene
+     */
+    BM25
+    {
+        @Override
+        protected double getWeight(float frequency, float length, double idf, double averageLength)
+        {
+            double lengthNorm = averageLength > 0 ? 1 - BM25_B + BM25_B * length / averageLength : 1;
+            return idf * frequency * (BM25_K1 + 1) / (frequency + BM25_K1 * lengthNorm);
+        }
+
+        @Override
+        protected double getIdf(int documentFrequency, long documentsNumber)
+        {
+            return Math.log(1 + (documentsNumber - documentFrequency + 0.5) / (documentFrequency + 0.5));
+        }
+    };
+
+    /** BM25 term frequency saturation */
+    private static final double BM25_K1 = 1.2;
+    /** BM25 length normalization, from 0 (none) to 1 (full) */
+    private static final double BM25_B = 0.75;
+
+
+    /**
+     * Returns the weight of a term in a tweet
+     * @param frequency The term frequency in the tweet
+     * @param length The tweet length : the sum of its terms frequencies
+     * @param idf The inverse document frequency of the term (See getIdf)
+     * @param averageLength The average length of the tweets met so far
+     * @return The term weight
+     */
+    protected abstract double getWeight(float frequency, float length, double idf, double averageLength);
+
+    /**
+     * @param documentFrequency The number of tweets containing the term
+     * @param documentsNumber The number of tweets
+     * @return The inverse document frequency of the term, 1 if the weighting does not use it
+     */
+    protected double getIdf(int documentFrequency, long documentsNumber)
+    {
+        return 1;
+    }
+
+    /**
+     * Returns the weighted vector of a tweet
+     * @param vector The terms frequency vector of the tweet
+     * @param frequencies The document frequencies of the tweets met so far, the tweet included
+     * @return The weighted vector, with the same term IDs
+     */
+    public SparseVector getWeightedVector(SparseVector vector, DocumentFrequencies frequencies)
+    {
+        int[] termIds = vector.getTermIds();
+        float[] counts = vector.getWeights();
+        float[] weights = new float[counts.length];
+        long documentsNumber = frequencies.getDocumentsNumber();
+        double averageLength = frequencies.getAverageDocumentLength();
+
+        float length = 0;
+        for(float count : counts)
+        {
+            length += count;
+        }
+        for(int i = 0; i < termIds.length; ++i)
+        {
+            double idf = getIdf(frequencies.getDocumentFrequency(termIds[i]), documentsNumber);
+            weights[i] = (float) getWeight(counts[i], length, idf, averageLength);
+        }
+        return new SparseVector(termIds, weights);
+    }
+}
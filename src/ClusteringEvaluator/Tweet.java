@@ -0,0 +1,51 @@
+package ClusteringEvaluator;
+
+
+/**
+ * Tweet read from the database (See TweetReader)
+ * The same instance is refilled with each row by the reader, so that it must be copied to be kept.
+ */
+public class Tweet
+{
+    /** Tweet ID */
+    private long id;
+    /** Tweet content, never null */
+    private String text;
+    /** Tweet creation date, in milliseconds, 0 if it is not read */
+    private long timestamp;
+
+
+    /**
+     * Refills the tweet with a new row
+     * @param id The tweet ID
+     * @param text The tweet content
+     * @param timestamp The tweet creation date, in milliseconds
+     */
+    void set(long id, String text, long timestamp)
+    {
+        this.id = id;
+        this.text = text;
+        this.timestamp = timestamp;
+    }
+
+    public long getId()
+    {
+        return id;
+    }
+
+    public String getText()
+    {
+        return text;
+    }
+
+    public long getTimestamp()
+    {
+        return timestamp;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%d %d %s", id, timestamp, text);
+    }
+}
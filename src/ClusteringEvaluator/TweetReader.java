@@ -0,0 +1,162 @@
+package ClusteringEvaluator;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+
+
+/**
+ * Streaming reader of the tweets table : only the needed columns are selected, the rows are fetched by blocks,
+ * and every row is read into the same Tweet instance, so that reading a tweet only costs the copy of its columns
+ * The columns are read by index, without any metadata call.
+ * Each reader opens its own connection, closed by close.
+ * A database failure while iterating is thrown as an IllegalStateException. An instance is not thread safe.
+ */
+public class TweetReader implements Iterator<Tweet>
+{
+    /** Number of rows fetched at once */
+    private static final int FETCH_SIZE = 1000;
+    /** Query timeout, in seconds */
+    private static final int QUERY_TIMEOUT = 30;
+
+    /** Connection of the reader */
+    private final Connection connection;
+    /** Statement of the query */
+    private final Statement statement;
+    /** Rows of the query */
+    private final ResultSet resultSet;
+    /** True if the creation dates are read */
+    private final boolean timestamps;
+    /** Parser of the creation dates */
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat(FrequencyMatrixBuilder.CREATED_AT_FORMAT, Locale.ENGLISH);
+    /** Tweet refilled with each row */
+    private final Tweet tweet = new Tweet();
+
+    /** True if the result set is on a row which has not been returned yet */
+    private boolean fetched = false;
+    /** True once the last row has been passed */
+    private boolean finished = false;
+
+
+    /**
+     * Opens the database and runs the query
+     * @param databasePath The tweets database path (See FrequencyMatrixBuilder.TWEETS_DATABASE)
+     * @param chronological True to read the tweets in chronological order (by ID, the IDs growing with time),
+     *                      false to read them in storage order, which needs no sort
+     * @param timestamps True to read and parse the creation dates, false to leave the timestamps to 0
+     * @throws ClassNotFoundException If the database driver is missing
+     * @throws SQLException
+     */
+    public TweetReader(String databasePath, boolean chronological, boolean timestamps) throws ClassNotFoundException, SQLException
+    {
+        this.timestamps = timestamps;
+        Class.forName("org.sqlite.JDBC");
+        connection = DriverManager.getConnection(databasePath);
+
+        StringBuilder query = new StringBuilder();
+        query.append(String.format("SELECT %s, %s", FrequencyMatrixBuilder.ID, FrequencyMatrixBuilder.TEXT));
+        if(timestamps)
+        {
+            query.append(", ").append(FrequencyMatrixBuilder.CREATED_AT);
+        }
+        query.append(" FROM tweets");
+        if(chronological)
+        {
+            query.append(" ORDER BY ").append(FrequencyMatrixBuilder.ID);
+        }
+
+        try
+        {
+            statement = connection.createStatement();
+            statement.setQueryTimeout(QUERY_TIMEOUT);
+            statement.setFetchSize(FETCH_SIZE);
+            resultSet = statement.executeQuery(query.toString());
+        }
+        catch(SQLException ex)
+        {
+            connection.close();
+            throw ex;
+        }
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        if(!fetched && !finished)
+        {
+            try
+            {
+                fetched = resultSet.next();
+                finished = !fetched;
+            }
+            catch(SQLException ex)
+            {
+                throw new IllegalStateException("Failed to read the tweets", ex);
+            }
+        }
+        return fetched;
+    }
+
+    /**
+     * @return The next tweet, the same instance being refilled by the next call
+     */
+    @Override
+    public Tweet next()
+    {
+        if(!hasNext())
+        {
+            throw new NoSuchElementException();
+        }
+        fetched = false;
+
+        try
+        {
+            String text = resultSet.getString(2);
+            long timestamp = 0;
+            if(timestamps)
+            {
+                timestamp = dateFormat.parse(resultSet.getString(3)).getTime();
+            }
+            tweet.set(resultSet.getLong(1), text == null ? "" : text, timestamp);
+        }
+        catch(SQLException ex)
+        {
+            throw new IllegalStateException("Failed to read the tweets", ex);
+        }
+        catch(ParseException ex)
+        {
+            throw new IllegalStateException("Invalid tweet creation date", ex);
+        }
+        return tweet;
+    }
+
+    @Override
+    public void remove()
+    {
+        throw new UnsupportedOperationException("The tweets are read only");
+    }
+
+    /**
+     * Closes the query and the connection
+     * @throws SQLException
+     */
+    public void close() throws SQLException
+    {
+        try
+        {
+            resultSet.close();
+            statement.close();
+        }
+        finally
+        {
+            connection.close();
+        }
+    }
+}
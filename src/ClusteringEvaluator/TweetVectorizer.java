@@ -0,0 +1,70 @@
+package ClusteringEvaluator;
+
+import java.io.IOException;
+import java.util.List;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.util.Version;
+
+
+/**
+ * Tokenization and vectorization of the tweets : the terms are added to a dictionary,
+ * and each text becomes its terms frequency vector
+ * This state is kept apart from the seeds of the clustering (See StreamingFSD), so that a pipeline can
+ * vectorize and cluster the tweets in two threads, each one owning its own state. An instance is not thread safe.
+ */
+public class TweetVectorizer
+{
+    /** Analyzer tokenizing the tweets text, the same as the frequency matrix builder one */
+    private final Analyzer analyzer = new StandardAnalyzer(Version.LUCENE_44);
+    /** Dictionary of every term met so far */
+    private final TermDictionary dictionary;
+    /** Buffer of the terms of the tweet being vectorized */
+    private final SparseVectorBuilder vectorBuilder = new SparseVectorBuilder();
+
+
+    /**
+     * @param dictionary The dictionary of the terms already known, completed with new terms
+     */
+    public TweetVectorizer(TermDictionary dictionary)
+    {
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * Tokenizes a text with the analyzer and returns its terms frequency vector
+     * The terms which have never been met are added to the terms dictionary
+     * @param text The text to tokenize
+     * @return The sparse vector of the text
+     * @throws IOException
+     */
+    public SparseVector getSparseVector(String text) throws IOException
+    {
+        return getSparseVector(FrequencyMatrixBuilder.getTokens(analyzer, text));
+    }
+
+    /**
+     * Returns the terms frequency vector of an already tokenized text
+     * The terms which have never been met are added to the terms dictionary
+     * @param tokens The tokens of the text, duplicates included
+     * @return The sparse vector of the text
+     */
+    public SparseVector getSparseVector(List<String> tokens)
+    {
+        for(String term : tokens)
+        {
+            vectorBuilder.add(dictionary.add(term), 1);
+        }
+
+        //Duplicated terms are merged, so that each weight is the term frequency
+        return vectorBuilder.build();
+    }
+
+    /**
+     * @return The dictionary of every term met so far
+     */
+    public TermDictionary getDictionary()
+    {
+        return dictionary;
+    }
+}